@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.dmyersturnbull.ectree.ECTree;
+import com.dmyersturnbull.ectree.ECTreeFactory;
+import com.dmyersturnbull.ectree.FrozenECTree;
+
+/**
+ * Measures building trees from SIB text and loading snapshots.
+ * 
+ * @author dmyersturnbull
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+
+	@Param({ "1", "10", "100", "1000" })
+	public int scale;
+
+	private String text;
+	private File sibFile;
+	private File snapshot;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		text = SyntheticTrees.sibText(scale);
+		sibFile = File.createTempFile("enzclass", ".txt");
+		Files.write(sibFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+		snapshot = File.createTempFile("enzclass", ".snapshot");
+		ECTreeFactory.writeSnapshot(ECTreeFactory.fromSibFile(sibFile), snapshot, sibFile);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		sibFile.delete();
+		snapshot.delete();
+	}
+
+	@Benchmark
+	public ECTree fromSibFile() throws IOException {
+		return ECTreeFactory.fromSibFile(new BufferedReader(new StringReader(text)));
+	}
+
+	@Benchmark
+	public ECTree fromSibFileMapped() throws IOException {
+		return ECTreeFactory.fromSibFileMapped(sibFile);
+	}
+
+	@Benchmark
+	public FrozenECTree fromSnapshot() throws IOException {
+		return ECTreeFactory.fromSnapshot(snapshot);
+	}
+
+	@Benchmark
+	public FrozenECTree fromSnapshotChecked() throws IOException {
+		return ECTreeFactory.fromSnapshot(snapshot, sibFile);
+	}
+
+	@Benchmark
+	public void parseSibFile(Blackhole blackhole) throws IOException {
+		ECTreeFactory.parseSibFile(new BufferedReader(new StringReader(text)),
+				(number, description) -> blackhole.consume(number));
+	}
+
+	@Benchmark
+	public FrozenECTree freeze() throws IOException {
+		return ECTreeFactory.fromSibFile(new BufferedReader(new StringReader(text))).freeze();
+	}
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dmyersturnbull.ectree.ECNode;
+import com.dmyersturnbull.ectree.ECNumber;
+
+/**
+ * Measures finding nodes by EC number.
+ * 
+ * @author dmyersturnbull
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+	@Benchmark
+	public ECNode findByEcNumber(TreeState state) {
+		return state.tree.findByEcNumber(state.numbers[state.nextQuery()]);
+	}
+
+	@Benchmark
+	public ECNode findByEcNumberString(TreeState state) {
+		return state.tree.findByEcNumber(state.numberStrings[state.nextQuery()]);
+	}
+
+	@Benchmark
+	public ECNode findByEcNumberFrozen(TreeState state) {
+		return state.frozen.findByEcNumber(state.numbers[state.nextQuery()]);
+	}
+
+	@Benchmark
+	public ECNode findByEcNumberInSubtree(TreeState state) {
+		ECNumber number = state.numbers[state.nextQuery()];
+		return state.tree.findByEcNumber(ECNumber.valueOf(number.getCodeAtDepth(1))).findByEcNumber(number);
+	}
+
+	@Benchmark
+	public int[] resolveIds(TreeState state) {
+		return state.resolver.resolveIds(state.numberStrings);
+	}
+
+	@Benchmark
+	public ECNumber parseEcNumber(TreeState state) {
+		return ECNumber.parse(state.numberStrings[state.nextQuery()]);
+	}
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dmyersturnbull.ectree.ECNode;
+import com.dmyersturnbull.ectree.ECNodeSet;
+import com.dmyersturnbull.ectree.ECTree;
+import com.dmyersturnbull.ectree.ECTreeFactory;
+
+/**
+ * Measures description searches, with and without the description index,
+ * and combining their results with other queries.
+ * 
+ * @author dmyersturnbull
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+	@Param({ "1", "10", "100" })
+	public int scale;
+
+	@Param({ "sulfur", "acceptor", "Forming carbon-sulfur bonds." })
+	public String query;
+
+	private ECTree tree;
+	private ECTree indexed;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		String text = SyntheticTrees.sibText(scale);
+		tree = ECTreeFactory.fromSibFile(new BufferedReader(new StringReader(text)));
+		indexed = ECTreeFactory.fromSibFile(new BufferedReader(new StringReader(text)));
+		indexed.indexDescriptions();
+	}
+
+	@Benchmark
+	public NavigableSet<ECNode> findByDescriptionSubstring() {
+		return tree.findByDescriptionSubstring(query);
+	}
+
+	@Benchmark
+	public NavigableSet<ECNode> findByDescriptionSubstringIndexed() {
+		return indexed.findByDescriptionSubstring(query);
+	}
+
+	@Benchmark
+	public NavigableSet<ECNode> findByDescriptionSubstringFrozen() {
+		return tree.freeze().findByDescriptionSubstring(query);
+	}
+
+	@Benchmark
+	public List<ECNode> findBySimilarDescription() {
+		return tree.findBySimilarDescription(query, 2, 10);
+	}
+
+	@Benchmark
+	public List<ECNode> findBySimilarDescriptionIndexed() {
+		return indexed.findBySimilarDescription(query, 2, 10);
+	}
+
+	@Benchmark
+	public List<ECNode> searchDescriptions() {
+		return tree.searchDescriptions(query, 10);
+	}
+
+	@Benchmark
+	public NavigableSet<ECNode> findByExactDescription() {
+		return tree.findByExactDescription(query);
+	}
+
+	@Benchmark
+	public NavigableSet<ECNode> findByExactDescriptionIndexed() {
+		return indexed.findByExactDescription(query);
+	}
+
+	@Benchmark
+	public ECNodeSet combineWithDepth() {
+		return indexed.findNodesOfDepth(3).and(indexed.findByDescriptionSubstring(query));
+	}
+
+	/**
+	 * The same as {@link #combineWithDepth()}, but copying each result into a
+	 * TreeSet first, as queries used to return.
+	 */
+	@Benchmark
+	public NavigableSet<ECNode> combineWithDepthAsTreeSets() {
+		NavigableSet<ECNode> result = new TreeSet<ECNode>(indexed.findNodesOfDepth(3));
+		result.retainAll(new TreeSet<ECNode>(indexed.findByDescriptionSubstring(query)));
+		return result;
+	}
+
+}
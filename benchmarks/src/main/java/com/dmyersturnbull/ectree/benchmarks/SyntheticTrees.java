@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Generates SIB {@code enzclass.txt} files for benchmarks. Scale 1 is the
+ * bundled 2013-07-24 release; larger scales have about that many times as
+ * many classes, spread over the six top-level classes, with descriptions
+ * drawn from the vocabulary of the real release.
+ * 
+ * @author dmyersturnbull
+ */
+public class SyntheticTrees {
+
+	private static final String RESOURCE = "/enzclass_2013-07-24.txt";
+
+	/**
+	 * Returns the text of the bundled release.
+	 */
+	public static String bundledText() throws IOException {
+		try (InputStream in = SyntheticTrees.class.getResourceAsStream(RESOURCE)) {
+			if (in == null) throw new IOException("Missing " + RESOURCE + " on the classpath");
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				out.write(buffer, 0, n);
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Returns an SIB file with about {@code scale} times as many classes as
+	 * the bundled release. The same scale always gives the same text.
+	 */
+	public static String sibText(int scale) throws IOException {
+		String bundled = bundledText();
+		if (scale <= 1) return bundled;
+		String[] vocabulary = vocabulary(bundled);
+		Random random = new Random(scale);
+		int perTopLevel = 334 * scale / 6;
+		int subclasses = (int) Math.ceil(Math.sqrt(perTopLevel));
+		int subSubclasses = (int) Math.ceil((double) perTopLevel / subclasses);
+		StringBuilder sb = new StringBuilder();
+		for (int a = 1; a <= 6; a++) {
+			sb.append(String.format("%d. -. -.-  %s%n", a, description(vocabulary, random)));
+			for (int b = 1; b <= subclasses; b++) {
+				sb.append(String.format("%d.%2d. -.-   %s%n", a, b, description(vocabulary, random)));
+				for (int c = 1; c < subSubclasses; c++)
+					sb.append(String.format("%d.%2d.%2d.-    %s%n", a, b, c, description(vocabulary, random)));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static String[] vocabulary(String bundled) {
+		Set<String> words = new LinkedHashSet<String>();
+		for (String line : bundled.split("\\n")) {
+			if (line.isEmpty() || !Character.isDigit(line.charAt(0))) continue;
+			for (String word : line.substring(10).trim().split("\\s+")) {
+				if (!word.isEmpty()) words.add(word.replace(".", ""));
+			}
+		}
+		return words.toArray(new String[words.size()]);
+	}
+
+	private static String description(String[] vocabulary, Random random) {
+		List<String> words = new ArrayList<String>();
+		int n = 2 + random.nextInt(7);
+		for (int i = 0; i < n; i++)
+			words.add(vocabulary[random.nextInt(vocabulary.length)]);
+		String joined = String.join(" ", words);
+		return Character.toUpperCase(joined.charAt(0)) + joined.substring(1) + ".";
+	}
+
+}
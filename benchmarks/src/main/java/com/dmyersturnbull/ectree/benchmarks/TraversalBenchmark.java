@@ -0,0 +1,84 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree.benchmarks;
+
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.dmyersturnbull.ectree.ECNode;
+
+/**
+ * Measures full traversals and depth queries.
+ * 
+ * @author dmyersturnbull
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TraversalBenchmark {
+
+	@Benchmark
+	public void inOrder(TreeState state, Blackhole blackhole) {
+		consume(state.tree.inOrder(), blackhole);
+	}
+
+	@Benchmark
+	public void breadthFirst(TreeState state, Blackhole blackhole) {
+		consume(state.tree.breadthFirst(), blackhole);
+	}
+
+	@Benchmark
+	public void depthFirst(TreeState state, Blackhole blackhole) {
+		consume(state.tree.depthFirst(), blackhole);
+	}
+
+	@Benchmark
+	public void inOrderFrozen(TreeState state, Blackhole blackhole) {
+		consume(state.frozen.inOrder(), blackhole);
+	}
+
+	@Benchmark
+	public long parallelStream(TreeState state) {
+		return state.tree.parallelStream().filter(node -> node.getDepth() == 3).count();
+	}
+
+	@Benchmark
+	public NavigableSet<ECNode> findNodesOfDepth1(TreeState state) {
+		return state.tree.findNodesOfDepth(1);
+	}
+
+	@Benchmark
+	public NavigableSet<ECNode> findNodesOfDepth3(TreeState state) {
+		return state.tree.findNodesOfDepth(3);
+	}
+
+	private static void consume(Iterator<ECNode> iter, Blackhole blackhole) {
+		while (iter.hasNext())
+			blackhole.consume(iter.next());
+	}
+
+}
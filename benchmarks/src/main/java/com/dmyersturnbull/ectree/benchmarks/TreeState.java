@@ -0,0 +1,86 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.dmyersturnbull.ectree.ECNode;
+import com.dmyersturnbull.ectree.ECNumber;
+import com.dmyersturnbull.ectree.ECResolver;
+import com.dmyersturnbull.ectree.ECTree;
+import com.dmyersturnbull.ectree.ECTreeFactory;
+import com.dmyersturnbull.ectree.FrozenECTree;
+
+/**
+ * A tree at a given {@link SyntheticTrees scale}, plus query inputs drawn from
+ * it.
+ * 
+ * @author dmyersturnbull
+ */
+@State(Scope.Benchmark)
+public class TreeState {
+
+	/** The number of prepared queries; a power of 2 */
+	static final int QUERIES = 1024;
+
+	@Param({ "1", "10", "100", "1000" })
+	public int scale;
+
+	public String text;
+	public ECTree tree;
+	public FrozenECTree frozen;
+	public ECNumber[] numbers = new ECNumber[QUERIES];
+	public String[] numberStrings = new String[QUERIES];
+	public ECResolver resolver;
+
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		text = SyntheticTrees.sibText(scale);
+		tree = ECTreeFactory.fromSibFile(new BufferedReader(new StringReader(text)));
+		frozen = tree.freeze();
+		List<ECNode> nodes = new ArrayList<ECNode>();
+		for (ECNode node : tree) {
+			if (!node.isRoot()) nodes.add(node);
+		}
+		Collections.shuffle(nodes, new Random(0));
+		for (int i = 0; i < QUERIES; i++) {
+			numbers[i] = nodes.get(i % nodes.size()).getEcNumber();
+			numberStrings[i] = numbers[i].toString();
+		}
+		resolver = tree.resolver();
+	}
+
+	/**
+	 * Returns the index of the next prepared query.
+	 */
+	int nextQuery() {
+		return next++ & QUERIES - 1;
+	}
+
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+/**
+ * Answers lowest-common-ancestor queries in constant time over a tree laid out
+ * in-order, as in {@link FrozenECTree}. For nodes {@code u < v} where
+ * {@code u} is not an ancestor of {@code v}, the lowest common ancestor is the
+ * parent of the shallowest node in the id range {@code (u, v]}. That range
+ * minimum is answered from a sparse table built in O(n log n). This is the
+ * Euler-tour reduction, using the in-order layout in place of the tour so the
+ * table has n rather than 2n - 1 columns.
+ * 
+ * @author dmyersturnbull
+ */
+class AncestorIndex {
+
+	private final int[] parents;
+	private final int[] ends;
+	private final byte[] depths;
+
+	/**
+	 * {@code table[k][i]} is the shallowest node among ids {@code i} to
+	 * {@code i + 2^k - 1}.
+	 */
+	private final int[][] table;
+
+	AncestorIndex(int[] parents, int[] ends, byte[] depths) {
+		this.parents = parents;
+		this.ends = ends;
+		this.depths = depths;
+		int n = depths.length;
+		int levels = 32 - Integer.numberOfLeadingZeros(Math.max(n, 1));
+		table = new int[levels][];
+		table[0] = new int[n];
+		for (int i = 0; i < n; i++)
+			table[0][i] = i;
+		for (int k = 1; k < levels; k++) {
+			int half = 1 << k - 1;
+			int[] previous = table[k - 1];
+			int[] row = new int[n - (1 << k) + 1];
+			for (int i = 0; i < row.length; i++)
+				row[i] = shallower(previous[i], previous[i + half]);
+			table[k] = row;
+		}
+	}
+
+	int lowestCommonAncestor(int a, int b) {
+		if (a == b) return a;
+		int u = Math.min(a, b);
+		int v = Math.max(a, b);
+		if (v < ends[u]) return u;
+		int k = 31 - Integer.numberOfLeadingZeros(v - u);
+		return parents[shallower(table[k][u + 1], table[k][v - (1 << k) + 1])];
+	}
+
+	private int shallower(int a, int b) {
+		return depths[b] < depths[a] ? b : a;
+	}
+
+}
@@ -0,0 +1,276 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Spliterator;
+
+/**
+ * An {@link ECTree} that can be modified while other threads query it.
+ * 
+ * Writers add nodes to a private mutable tree under a lock and only mark it
+ * as changed. The next read publishes a new {@link FrozenECTree} version of it
+ * through a volatile field (copy-on-write), so readers never see a half-linked
+ * node. Each method call sees a single version; to make several queries
+ * against the same version, call {@link #freeze()} once and query the result.
+ * 
+ * Publishing a version lays out the whole tree again, which takes time linear
+ * in its size, but adds between two reads share one publish: adding k nodes
+ * and then reading costs O(k + n) rather than O(kn). Reads do not block
+ * unless nodes were added since the last publish; then the first reader
+ * publishes under the lock while writers and other such readers wait.
+ * Alternating single adds with reads still costs O(n) per add, so this class
+ * suits trees that are read much more often than they are written.
+ * 
+ * @author dmyersturnbull
+ */
+public class ConcurrentECTree extends ECTree {
+
+	private final ECTree working;
+	private volatile FrozenECTree version;
+
+	/**
+	 * True if {@link #working} has nodes that {@link #version} lacks; written
+	 * under the lock
+	 */
+	private volatile boolean stale;
+
+	private boolean indexingDescriptions;
+
+	/**
+	 * Creates a new ConcurrentECTree. The root does not need to be added
+	 * separately.
+	 */
+	public ConcurrentECTree() {
+		this(new ECTree());
+	}
+
+	/**
+	 * Creates a ConcurrentECTree with the nodes of {@code tree}, which must
+	 * not be used afterward.
+	 */
+	public ConcurrentECTree(ECTree tree) {
+		super(null);
+		if (tree instanceof FrozenECTree || tree instanceof ConcurrentECTree) {
+			throw new IllegalArgumentException("Cannot wrap a " + tree.getClass().getSimpleName());
+		}
+		working = tree;
+		version = tree.freeze();
+	}
+
+	/**
+	 * Adds {@code node}, which is published by the next read.
+	 * 
+	 * @see ECTree#add(ECNode)
+	 */
+	@Override
+	public synchronized void add(ECNode node) {
+		working.add(node);
+		stale = true;
+	}
+
+	/**
+	 * Adds {@code nodes} in iteration order while holding the lock once. If a
+	 * node cannot be added, the nodes before it are still added.
+	 * 
+	 * @see ECTree#add(ECNode)
+	 */
+	public synchronized void addAll(Collection<? extends ECNode> nodes) {
+		try {
+			for (ECNode node : nodes)
+				working.add(node);
+		} finally {
+			stale = true;
+		}
+	}
+
+	@Override
+	protected synchronized void addFast(ECNode node) {
+		working.addFast(node);
+		stale = true;
+	}
+
+	/**
+	 * Returns the latest version, first publishing the nodes added since the
+	 * last one.
+	 */
+	private FrozenECTree current() {
+		if (stale) publish();
+		return version;
+	}
+
+	private synchronized void publish() {
+		if (!stale) return;
+		FrozenECTree next = working.freeze();
+		if (indexingDescriptions) next.indexDescriptions();
+		version = next;
+		stale = false;
+	}
+
+	@Override
+	public ECNodeSet findByDescriptionSubstring(String descriptionSubstring) {
+		return current().findByDescriptionSubstring(descriptionSubstring);
+	}
+
+	/**
+	 * Searches the latest version; {@code within} must have been found on
+	 * that same version.
+	 */
+	@Override
+	public ECNodeSet findByDescriptionSubstring(String descriptionSubstring, ECNodeSet within) {
+		return current().findByDescriptionSubstring(descriptionSubstring, within);
+	}
+
+	@Override
+	public ECNode findByEcNumber(ECNumber ecNumber) {
+		return current().findByEcNumber(ecNumber);
+	}
+
+	@Override
+	public ECNodeSet findByExactDescription(String description) {
+		return current().findByExactDescription(description);
+	}
+
+	/**
+	 * Searches the latest version; {@code within} must have been found on
+	 * that same version.
+	 */
+	@Override
+	public ECNodeSet findByExactDescription(String description, ECNodeSet within) {
+		return current().findByExactDescription(description, within);
+	}
+
+	@Override
+	public NavigableSet<ECNode> findByPattern(String pattern) {
+		return current().findByPattern(pattern);
+	}
+
+	@Override
+	public NavigableSet<ECNode> findByRange(ECNumber from, boolean fromInclusive, ECNumber to, boolean toInclusive) {
+		return current().findByRange(from, fromInclusive, to, toInclusive);
+	}
+
+	@Override
+	public List<ECNode> findBySimilarDescription(String description, int maxDistance, int limit) {
+		return current().findBySimilarDescription(description, maxDistance, limit);
+	}
+
+	@Override
+	public List<ECNode> searchDescriptions(String query, int limit) {
+		return current().searchDescriptions(query, limit);
+	}
+
+	@Override
+	public List<ECNode> searchDescriptions(String query, int limit, ECNode subtree) {
+		return current().searchDescriptions(query, limit, subtree);
+	}
+
+	@Override
+	public Iterator<ECNode> breadthFirst(int fromDepth) {
+		return current().breadthFirst(fromDepth);
+	}
+
+	@Override
+	public ECNodeSet findNodesOfDepth(int depth) {
+		return current().findNodesOfDepth(depth);
+	}
+
+	@Override
+	public ECNode getNode(int id) {
+		return current().getNode(id);
+	}
+
+	@Override
+	public int getNodeId(ECNumber ecNumber) {
+		return current().getNodeId(ecNumber);
+	}
+
+	@Override
+	public boolean isAncestor(ECNode a, ECNode b) {
+		return current().isAncestor(a, b);
+	}
+
+	@Override
+	public boolean isAncestor(int a, int b) {
+		return current().isAncestor(a, b);
+	}
+
+	@Override
+	public ECNode lowestCommonAncestor(ECNode a, ECNode b) {
+		return current().lowestCommonAncestor(a, b);
+	}
+
+	@Override
+	public int lowestCommonAncestor(int a, int b) {
+		return current().lowestCommonAncestor(a, b);
+	}
+
+	@Override
+	public void lowestCommonAncestors(int[] a, int[] b, int[] result) {
+		current().lowestCommonAncestors(a, b, result);
+	}
+
+	/**
+	 * Returns the latest version, which stays unchanged as nodes are added.
+	 */
+	@Override
+	public FrozenECTree freeze() {
+		return current();
+	}
+
+	/**
+	 * Builds a description index for the latest version, and for every
+	 * version published after it.
+	 */
+	@Override
+	public synchronized void indexDescriptions() {
+		indexingDescriptions = true;
+		current().indexDescriptions();
+	}
+
+	@Override
+	protected ECNode getRoot() {
+		return current().getRoot();
+	}
+
+	@Override
+	public synchronized int getDescriptionCount() {
+		return working.getDescriptionCount();
+	}
+
+	@Override
+	public synchronized long getDescriptionByteCount() {
+		return working.getDescriptionByteCount();
+	}
+
+	@Override
+	public int size() {
+		return current().size();
+	}
+
+	@Override
+	public Iterator<ECNode> inOrder() {
+		return current().inOrder();
+	}
+
+	@Override
+	public Spliterator<ECNode> spliterator() {
+		return current().spliterator();
+	}
+
+}
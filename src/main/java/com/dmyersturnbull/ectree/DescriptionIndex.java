@@ -0,0 +1,257 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trigram index over the case-folded descriptions of the nodes in an
+ * {@link ECTree}. Descriptions and queries are folded with
+ * {@link StringPool#foldCase(String)}, as the unindexed searches compare them,
+ * so enabling the index never changes results. Nodes without a description
+ * are not indexed and match nothing. Substring queries intersect the posting lists of the
+ * query's trigrams to find candidates, then verify each candidate.
+ * Similarity queries count shared trigrams to find candidates, then compute a
+ * bounded edit distance for each.
+ * 
+ * @author dmyersturnbull
+ */
+class DescriptionIndex {
+
+	private static final int[] NONE = new int[0];
+
+	/**
+	 * Every node except the root, in-order; positions in this array are the
+	 * positions used in posting lists, and one less than the node ids.
+	 */
+	private final ECNode[] nodes;
+	private final String[] normalized;
+	private final Map<Long, int[]> trigrams;
+	private final Map<String, int[]> exact;
+
+	DescriptionIndex(ECTree tree) {
+		List<ECNode> list = new ArrayList<>();
+		for (ECNode node : tree) {
+			if (!node.isRoot()) list.add(node);
+		}
+		nodes = list.toArray(new ECNode[list.size()]);
+		normalized = new String[nodes.length];
+		Map<Long, int[]> trigrams = new HashMap<>();
+		Map<String, int[]> exact = new HashMap<>();
+		for (int i = 0; i < nodes.length; i++) {
+			if (nodes[i].getDescription() == null) continue;
+			String description = normalize(nodes[i].getDescription());
+			normalized[i] = description;
+			append(exact, description, i);
+			for (int j = 0; j + 3 <= description.length(); j++) {
+				append(trigrams, trigram(description, j), i);
+			}
+		}
+		for (Map.Entry<Long, int[]> e : trigrams.entrySet())
+			e.setValue(trim(e.getValue()));
+		for (Map.Entry<String, int[]> e : exact.entrySet())
+			e.setValue(trim(e.getValue()));
+		this.trigrams = trigrams;
+		this.exact = exact;
+	}
+
+	/**
+	 * Sets the bit in {@code matches} for the id of every node whose
+	 * description contains {@code query}, ignoring case.
+	 */
+	void findBySubstring(String query, long[] matches) {
+		String q = normalize(query);
+		if (q.length() < 3) {
+			for (int i = 0; i < nodes.length; i++) {
+				if (normalized[i] != null && normalized[i].contains(q)) ECNodeSet.set(matches, i + 1);
+			}
+			return;
+		}
+		int[] candidates = null;
+		for (int j = 0; j + 3 <= q.length(); j++) {
+			int[] postings = trigrams.get(trigram(q, j));
+			if (postings == null) return;
+			if (candidates == null || postings.length < candidates.length) candidates = postings;
+		}
+		// the rarest trigram bounds the candidates; verification covers the rest
+		for (int i : candidates) {
+			if (normalized[i].contains(q)) ECNodeSet.set(matches, i + 1);
+		}
+	}
+
+	/**
+	 * Sets the bit in {@code matches} for the id of every node whose
+	 * description equals {@code query}, ignoring case.
+	 */
+	void findByExact(String query, long[] matches) {
+		int[] postings = exact.get(normalize(query));
+		if (postings != null) {
+			for (int i : postings)
+				ECNodeSet.set(matches, i + 1);
+		}
+	}
+
+	/**
+	 * Returns up to {@code limit} nodes whose descriptions are within edit
+	 * distance {@code maxDistance} of {@code query}, ignoring case and a
+	 * trailing period, nearest first and then in-order.
+	 */
+	List<ECNode> findSimilar(String query, int maxDistance, int limit) {
+		String q = stripPeriod(normalize(query));
+		Map<Long, Boolean> distinct = new HashMap<>();
+		for (int j = 0; j + 3 <= q.length(); j++)
+			distinct.put(trigram(q, j), Boolean.TRUE);
+		// each edit changes at most 3 trigrams, so a match shares the rest
+		int threshold = distinct.size() - 3 * maxDistance;
+		Matches matches = new Matches();
+		if (threshold <= 0) {
+			for (int i = 0; i < nodes.length; i++) {
+				if (normalized[i] != null) matches.consider(i, q, normalized[i], maxDistance);
+			}
+		} else {
+			int[] counts = new int[nodes.length];
+			for (Long trigram : distinct.keySet()) {
+				int[] postings = trigrams.get(trigram);
+				if (postings == null) continue;
+				for (int i : postings) {
+					if (++counts[i] == threshold) matches.consider(i, q, normalized[i], maxDistance);
+				}
+			}
+		}
+		List<ECNode> result = new ArrayList<>();
+		for (int i : matches.best(limit))
+			result.add(nodes[i]);
+		return result;
+	}
+
+	/**
+	 * Finds similar descriptions like {@link #findSimilar(String, int, int)},
+	 * but by computing the edit distance to every node of {@code tree}.
+	 */
+	static List<ECNode> scanSimilar(ECTree tree, String query, int maxDistance, int limit) {
+		String q = stripPeriod(normalize(query));
+		List<ECNode> nodes = new ArrayList<>();
+		Matches matches = new Matches();
+		for (ECNode node : tree) {
+			if (node.isRoot() || node.getDescription() == null) continue;
+			matches.consider(nodes.size(), q, normalize(node.getDescription()), maxDistance);
+			nodes.add(node);
+		}
+		List<ECNode> result = new ArrayList<>();
+		for (int i : matches.best(limit))
+			result.add(nodes.get(i));
+		return result;
+	}
+
+	/**
+	 * Positions and edit distances of matching descriptions.
+	 */
+	private static final class Matches {
+
+		/** Each is the distance in the high half and the position in the low */
+		private long[] found = new long[16];
+		private int size;
+
+		void consider(int i, String query, String description, int maxDistance) {
+			int length = description.endsWith(".") ? description.length() - 1 : description.length();
+			int distance = editDistance(query, description, length, maxDistance);
+			if (distance > maxDistance) return;
+			if (size == found.length) found = Arrays.copyOf(found, 2 * size);
+			found[size++] = (long) distance << 32 | i;
+		}
+
+		int[] best(int limit) {
+			Arrays.sort(found, 0, size);
+			int[] best = new int[Math.min(limit, size)];
+			for (int i = 0; i < best.length; i++)
+				best[i] = (int) found[i];
+			return best;
+		}
+	}
+
+	/**
+	 * Returns the Levenshtein distance between {@code a} and the first
+	 * {@code bLength} characters of {@code b}, or {@code max + 1} if it is
+	 * greater than {@code max}. Only the band of cells within {@code max} of
+	 * the diagonal is computed.
+	 */
+	static int editDistance(String a, String b, int bLength, int max) {
+		if (Math.abs(a.length() - bLength) > max) return max + 1;
+		int big = max + 1;
+		int[] previous = new int[bLength + 1];
+		int[] current = new int[bLength + 1];
+		for (int j = 0; j <= bLength; j++)
+			previous[j] = j <= max ? j : big;
+		for (int i = 1; i <= a.length(); i++) {
+			int from = Math.max(1, i - max);
+			int to = Math.min(bLength, i + max);
+			current[0] = i <= max ? i : big;
+			if (from > 1) current[from - 1] = big;
+			int rowMin = current[0];
+			for (int j = from; j <= to; j++) {
+				int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+				int d = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+				current[j] = Math.min(d, big);
+				rowMin = Math.min(rowMin, current[j]);
+			}
+			if (to < bLength) current[to + 1] = big;
+			if (rowMin > max) return big;
+			int[] swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[bLength];
+	}
+
+	private static String stripPeriod(String s) {
+		return s.endsWith(".") ? s.substring(0, s.length() - 1) : s;
+	}
+
+	private static String normalize(String description) {
+		return StringPool.foldCase(description);
+	}
+
+	private static Long trigram(String s, int start) {
+		return (long) s.charAt(start) << 32 | (long) s.charAt(start + 1) << 16 | s.charAt(start + 2);
+	}
+
+	/**
+	 * Appends {@code id} to the posting list for {@code key}. Element 0 of a
+	 * list under construction holds its size. Ids arrive in increasing order,
+	 * so a repeated id is always the last one.
+	 */
+	private static <K> void append(Map<K, int[]> map, K key, int id) {
+		int[] postings = map.get(key);
+		if (postings == null) {
+			postings = new int[4];
+			map.put(key, postings);
+		} else if (postings[postings[0]] == id) {
+			return;
+		} else if (postings[0] + 1 == postings.length) {
+			postings = Arrays.copyOf(postings, 2 * postings.length);
+			map.put(key, postings);
+		}
+		postings[++postings[0]] = id;
+	}
+
+	private static int[] trim(int[] postings) {
+		return postings[0] == 0 ? NONE : Arrays.copyOfRange(postings, 1, postings[0] + 1);
+	}
+
+}
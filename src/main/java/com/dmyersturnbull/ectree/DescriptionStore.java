@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A store of distinct descriptions, kept as UTF-8 in one growing byte array so
+ * that {@link ECNode ECNodes} need only hold an int. Equal descriptions are
+ * stored once. Strings are decoded when requested, and recently decoded ones
+ * are cached.
+ * 
+ * Each mutable {@link ECTree} owns one store, which its nodes' descriptions
+ * are moved into when they are added, so the store is freed with the tree. A
+ * tree's {@link ECTree#freeze() frozen} copy {@link #select(int[]) selects}
+ * from the store's arrays instead of copying the bytes. An
+ * {@link ECTreeRegistry} likewise keeps one store for all of its releases.
+ * 
+ * Descriptions are only ever added. Adding is synchronized, which a tree's
+ * own lock already makes uncontended; reading is not, since entries never
+ * change once added and larger arrays are published only after being filled.
+ * 
+ * @author dmyersturnbull
+ */
+final class DescriptionStore {
+
+	private static final int CACHE_SIZE = 4096;
+
+	private volatile byte[] bytes = new byte[1 << 10];
+	/** Entry i occupies bytes offsets[i] up to offsets[i + 1] */
+	private volatile int[] offsets = new int[1 << 6];
+	private int size;
+
+	/** Open-addressing table of entry + 1; guarded by this */
+	private int[] table = new int[1 << 7];
+
+	/** Grows with the table up to {@link #CACHE_SIZE} */
+	private volatile Decoded[] cache = new Decoded[1 << 6];
+
+	/**
+	 * Returns the id of {@code s}, adding it if it is new.
+	 */
+	synchronized int intern(String s) {
+		byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+		int hash = hash(encoded);
+		int mask = table.length - 1;
+		int slot = hash & mask;
+		for (int entry; (entry = table[slot]) != 0; slot = slot + 1 & mask) {
+			if (equals(entry - 1, encoded)) return entry - 1;
+		}
+		int id = size;
+		int start = offsets[id];
+		int end = start + encoded.length;
+		byte[] bytes = this.bytes;
+		if (end > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(end, 2 * bytes.length));
+		}
+		System.arraycopy(encoded, 0, bytes, start, encoded.length);
+		int[] offsets = this.offsets;
+		if (id + 2 > offsets.length) offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+		offsets[id + 1] = end;
+		// publish the bytes before the offsets that refer to them
+		this.bytes = bytes;
+		this.offsets = offsets;
+		size++;
+		table[slot] = id + 1;
+		if (2 * size > table.length) rehash();
+		return id;
+	}
+
+	/**
+	 * Returns the description with id {@code id}.
+	 */
+	String get(int id) {
+		Decoded[] cache = this.cache;
+		int slot = id & cache.length - 1;
+		Decoded decoded = cache[slot];
+		if (decoded != null && decoded.id == id) return decoded.string;
+		int[] offsets = this.offsets;
+		byte[] bytes = this.bytes;
+		String string = new String(bytes, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+		// entries are immutable, so racing writers at worst evict each other
+		cache[slot] = new Decoded(id, string);
+		return string;
+	}
+
+	/**
+	 * Returns true if description {@code id} contains {@code query}, ignoring
+	 * case.
+	 */
+	boolean containsIgnoreCase(int id, String query) {
+		if (StringPool.isAscii(query)) {
+			int[] offsets = this.offsets;
+			byte[] bytes = this.bytes;
+			int last = offsets[id + 1] - query.length();
+			for (int j = offsets[id]; j <= last; j++) {
+				if (regionMatchesAscii(bytes, j, query)) return true;
+			}
+			if (isAscii(bytes, offsets[id], offsets[id + 1])) return false;
+		}
+		return StringPool.containsIgnoreCase(get(id), query);
+	}
+
+	/**
+	 * Returns true if description {@code id} equals {@code query}, ignoring
+	 * case.
+	 */
+	boolean equalsIgnoreCase(int id, String query) {
+		if (StringPool.isAscii(query)) {
+			int[] offsets = this.offsets;
+			byte[] bytes = this.bytes;
+			int start = offsets[id];
+			if (offsets[id + 1] - start == query.length() && regionMatchesAscii(bytes, start, query)) return true;
+			if (isAscii(bytes, start, offsets[id + 1])) return false;
+		}
+		return StringPool.equalsIgnoreCase(get(id), query);
+	}
+
+	private static boolean isAscii(byte[] bytes, int from, int to) {
+		for (int k = from; k < to; k++) {
+			if (bytes[k] < 0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a pool whose string {@code i} is description {@code ids[i]}.
+	 * The pool shares the store's current arrays; descriptions added later
+	 * never change the entries it can see.
+	 */
+	StringPool select(int[] ids) {
+		return StringPool.select(bytes, offsets, ids);
+	}
+
+	/**
+	 * Returns the number of distinct descriptions.
+	 */
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes used by distinct descriptions.
+	 */
+	synchronized int byteSize() {
+		return offsets[size];
+	}
+
+	private static boolean regionMatchesAscii(byte[] bytes, int start, String query) {
+		for (int k = 0; k < query.length(); k++) {
+			if (StringPool.toLowerAscii(bytes[start + k]) != StringPool.toLowerAscii(query.charAt(k))) return false;
+		}
+		return true;
+	}
+
+	private boolean equals(int id, byte[] encoded) {
+		int start = offsets[id];
+		if (offsets[id + 1] - start != encoded.length) return false;
+		for (int k = 0; k < encoded.length; k++) {
+			if (bytes[start + k] != encoded[k]) return false;
+		}
+		return true;
+	}
+
+	private void rehash() {
+		int[] old = table;
+		table = new int[2 * old.length];
+		if (cache.length < Math.min(CACHE_SIZE, table.length)) cache = new Decoded[2 * cache.length];
+		int mask = table.length - 1;
+		for (int entry : old) {
+			if (entry == 0) continue;
+			int start = offsets[entry - 1];
+			int slot = hash(Arrays.copyOfRange(bytes, start, offsets[entry])) & mask;
+			while (table[slot] != 0)
+				slot = slot + 1 & mask;
+			table[slot] = entry;
+		}
+	}
+
+	private static int hash(byte[] encoded) {
+		int h = Arrays.hashCode(encoded) * 0x9E3779B9;
+		return h ^ h >>> 16;
+	}
+
+	private static final class Decoded {
+		final int id;
+		final String string;
+
+		Decoded(int id, String string) {
+			this.id = id;
+			this.string = string;
+		}
+	}
+
+}
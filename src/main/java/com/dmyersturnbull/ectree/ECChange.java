@@ -0,0 +1,76 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+/**
+ * One difference between two releases of an {@link ECTree}, as found by
+ * {@link ECTreeDiff}.
+ * 
+ * @author dmyersturnbull
+ */
+public final class ECChange {
+
+	public enum Type {
+		/** A class only in the new tree */
+		ADDED,
+		/** A class only in the old tree */
+		REMOVED,
+		/** A class in both trees whose description changed */
+		RENAMED,
+		/**
+		 * A class only in the old tree and a class only in the new tree with
+		 * the same depth and a description that no other class of that depth
+		 * has in either tree
+		 */
+		MOVED
+	}
+
+	private final Type type;
+	private final ECNode oldNode;
+	private final ECNode newNode;
+
+	ECChange(Type type, ECNode oldNode, ECNode newNode) {
+		this.type = type;
+		this.oldNode = oldNode;
+		this.newNode = newNode;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the node in the old tree, or {@code null} if the change is
+	 * {@link Type#ADDED}.
+	 */
+	public ECNode getOldNode() {
+		return oldNode;
+	}
+
+	/**
+	 * Returns the node in the new tree, or {@code null} if the change is
+	 * {@link Type#REMOVED}.
+	 */
+	public ECNode getNewNode() {
+		return newNode;
+	}
+
+	@Override
+	public String toString() {
+		return type + ": " + (oldNode == null ? "" : oldNode) + (oldNode != null && newNode != null ? " -> " : "")
+				+ (newNode == null ? "" : newNode);
+	}
+
+}
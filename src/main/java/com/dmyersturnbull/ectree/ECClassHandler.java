@@ -0,0 +1,37 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+/**
+ * Receives the classes of an SIB file as they are parsed, without a tree being
+ * built. See {@link ECTreeFactory#parseSibFile(java.io.BufferedReader, ECClassHandler)}.
+ * 
+ * @author dmyersturnbull
+ */
+@FunctionalInterface
+public interface ECClassHandler {
+
+	/**
+	 * Called once per class line, in file order.
+	 * 
+	 * @param ecNumber
+	 *            The class's number, a shared instance
+	 * @param description
+	 *            The class's description. It may be a view that is reused for
+	 *            the next call, so call {@code toString()} to keep it.
+	 */
+	void onClass(ECNumber ecNumber, CharSequence description);
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts hits on the nodes of an {@link ECTree} and rolls them up, so that the
+ * total for a node includes the hits on every node in its subtree. Counters
+ * are indexed by {@link ECTree#getNodeId(ECNumber) node id} and stored in
+ * primitive arrays.
+ * 
+ * Hits may be added from many threads at once. Like a
+ * {@link java.util.concurrent.atomic.LongAdder LongAdder}, each thread
+ * increments one of several stripes of counters, which keeps threads from
+ * contending for the same cells; the stripes are summed by {@link #rollUp()}.
+ * 
+ * The ids are those of the tree when the counter was created; nodes added to
+ * the tree later are not counted.
+ * 
+ * @author dmyersturnbull
+ * @see ECTree#counter()
+ */
+public final class ECCounter {
+
+	private final FrozenECTree tree;
+	private final AtomicLongArray[] stripes;
+	private final long[] totals;
+
+	ECCounter(FrozenECTree tree) {
+		this.tree = tree;
+		int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+		stripes = new AtomicLongArray[n];
+		for (int i = 0; i < n; i++)
+			stripes[i] = new AtomicLongArray(tree.size());
+		totals = new long[tree.size()];
+	}
+
+	/**
+	 * Adds one hit to the node with id {@code id}.
+	 */
+	public void increment(int id) {
+		add(id, 1);
+	}
+
+	/**
+	 * Adds one hit to the node with EC number {@code ecNumber}.
+	 * 
+	 * @return False if there is no such node, in which case nothing is
+	 *         counted
+	 */
+	public boolean increment(ECNumber ecNumber) {
+		int id = tree.getNodeId(ecNumber);
+		if (id < 0) return false;
+		add(id, 1);
+		return true;
+	}
+
+	/**
+	 * Adds {@code hits} hits to the node with id {@code id}.
+	 */
+	public void add(int id, long hits) {
+		stripe().addAndGet(id, hits);
+	}
+
+	/**
+	 * Returns the hits added to the node with id {@code id} itself, not
+	 * including its descendants.
+	 */
+	public long getCount(int id) {
+		long count = 0;
+		for (AtomicLongArray stripe : stripes)
+			count += stripe.get(id);
+		return count;
+	}
+
+	/**
+	 * Sums the hits on every node and rolls them up to the ancestors, in one
+	 * pass from the last node in-order to the root. Hits added while this runs
+	 * may or may not be included.
+	 */
+	public synchronized void rollUp() {
+		for (int i = 0; i < totals.length; i++)
+			totals[i] = getCount(i);
+		// in-order, every node comes after its parent
+		for (int i = totals.length - 1; i > 0; i--)
+			totals[tree.parent(i)] += totals[i];
+	}
+
+	/**
+	 * Returns the hits on the subtree of the node with id {@code id} as of the
+	 * last {@link #rollUp()}.
+	 */
+	public synchronized long getTotal(int id) {
+		return totals[id];
+	}
+
+	/**
+	 * Returns the hits on the subtree of {@code node} as of the last
+	 * {@link #rollUp()}.
+	 */
+	public long getTotal(ECNode node) {
+		int id = tree.getNodeId(node.getEcNumber());
+		if (id < 0) throw new IllegalArgumentException("Node " + node.getEcNumber() + " is not counted");
+		return getTotal(id);
+	}
+
+	/**
+	 * Copies the rolled-up totals into {@code result}, indexed by node id.
+	 */
+	public synchronized void getTotals(long[] result) {
+		System.arraycopy(totals, 0, result, 0, totals.length);
+	}
+
+	/**
+	 * Sets every count and total to zero.
+	 */
+	public synchronized void reset() {
+		for (AtomicLongArray stripe : stripes) {
+			for (int i = 0; i < totals.length; i++)
+				stripe.set(i, 0);
+		}
+		Arrays.fill(totals, 0);
+	}
+
+	/**
+	 * Returns the number of counters, which is the size of the tree.
+	 */
+	public int size() {
+		return totals.length;
+	}
+
+	private AtomicLongArray stripe() {
+		return stripes[(int) Thread.currentThread().getId() & stripes.length - 1];
+	}
+
+}
@@ -15,13 +15,17 @@
 package com.dmyersturnbull.ectree;
 
 import java.util.ArrayDeque;
-import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
-import java.util.List;
 import java.util.NavigableSet;
+import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.TreeSet;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A node of an {@link ECTree}. Contains a {@link #getEcNumber() Enzyme
@@ -34,20 +38,53 @@ import java.util.TreeSet;
  * performed {@link #inOrder() in-order} over nodes in the subtree rooted at
  * this ECNode.
  * 
+ * Traversal iterators are lazy: each node is visited only when it is
+ * requested. They are fail-fast, throwing a
+ * {@link ConcurrentModificationException} if the owning {@link ECTree} is
+ * modified during iteration.
+ * 
  * @author dmyersturnbull
  */
 public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 
 	private NavigableSet<ECNode> children;
-	private final String description;
+
+	/**
+	 * The description until this node is added to a tree, then {@code null}
+	 */
+	private String description;
+
+	/**
+	 * The id of the description in the {@link DescriptionStore} of the tree,
+	 * once added; otherwise -1
+	 */
+	private int descriptionId = -1;
 
 	private final ECNumber ecNumber;
 	private ECNode parent;
+	private ECTree tree;
 
 	public ECNode(ECNumber ecNumber, String description) {
+		this(ecNumber, description, new TreeSet<ECNode>());
+	}
+
+	/**
+	 * For subclasses that supply their own {@link #getChildren() children}.
+	 */
+	ECNode(ECNumber ecNumber, String description, NavigableSet<ECNode> children) {
 		this.ecNumber = ecNumber;
 		this.description = description;
-		children = new TreeSet<>();
+		this.children = children;
+	}
+
+	/**
+	 * Moves the description into {@code store}, which belongs to the tree
+	 * this node is being added to. Called before {@link #setTree(ECTree)}.
+	 */
+	final void storeDescription(DescriptionStore store) {
+		String own = getDescription();
+		description = null;
+		descriptionId = own == null ? -1 : store.intern(own);
 	}
 
 	protected boolean addChild(ECNode e) {
@@ -59,50 +96,26 @@ public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 	 * this node.
 	 */
 	public Iterator<ECNode> breadthFirst() {
-		List<ECNode> visited = new ArrayList<>();
-		Queue<ECNode> queue = new ArrayDeque<>();
-		queue.add(this);
-		while (!queue.isEmpty()) {
-			ECNode current = queue.poll();
-			visited.add(current);
-			for (ECNode child : current.getChildren()) {
-				queue.add(child);
-			}
-		}
-		return visited.iterator();
+		return new BreadthFirstIterator(this);
 	}
 
 	/**
-	 * Returns true if {@code second} comes before this node in an
-	 * {@link #inOrder() in-order} traversal.
+	 * Orders nodes as in an {@link #inOrder() in-order} traversal: the root
+	 * first, then by {@link ECNumber#compareTo(ECNumber) EC number}.
 	 */
 	@Override
 	public int compareTo(ECNode second) {
-		if (this.equals(second)) return 0;
-		int min = Math.min(this.getDepth(), second.getDepth());
-		for (int i = 1; i <= min; i++) {
-			if (this.getEcNumber().getCodeAtDepth(i) < second.getEcNumber().getCodeAtDepth(i)) {
-				return -1;
-			} else if (this.getEcNumber().getCodeAtDepth(i) > second.getEcNumber().getCodeAtDepth(i)) {
-				return 1;
-			}
-		}
-		return -1;
+		if (ecNumber == null) return second.ecNumber == null ? 0 : -1;
+		if (second.ecNumber == null) return 1;
+		return ecNumber.compareTo(second.ecNumber);
 	}
 
 	/**
 	 * Returns a depth-first iterator over ECNodes in the subtree rooted at this
-	 * node.
+	 * node. Every node is returned after all of its children.
 	 */
 	public Iterator<ECNode> depthFirst() {
-		LinkedHashSet<ECNode> visited = new LinkedHashSet<>();
-		for (ECNode child : children) {
-			Iterator<ECNode> i = child.depthFirst();
-			while (i.hasNext())
-				visited.add(i.next());
-		}
-		visited.add(this);
-		return visited.iterator();
+		return new DepthFirstIterator(this);
 	}
 
 	/**
@@ -110,13 +123,13 @@ public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 	 * {@link #getEcNumber() EC number}. Note that this may return true for
 	 * Nodes from different trees even if the {@link #getDescription()
 	 * descriptions}, {@link #getParent() parents}, or {@link #getChildren()
-	 * children} differ.
+	 * children} differ, or if one is an {@link EnzymeNode} or a node of a
+	 * {@link FrozenECTree}; this agrees with {@link #compareTo(ECNode)}.
 	 */
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj) return true;
-		if (obj == null) return false;
-		if (getClass() != obj.getClass()) return false;
+		if (!(obj instanceof ECNode)) return false;
 		ECNode other = (ECNode) obj;
 		if (ecNumber == null) {
 			if (other.ecNumber != null) return false;
@@ -127,29 +140,33 @@ public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 	/**
 	 * Searches the subtree rooted at this ECNode for every ECNode whose
 	 * description contains {@code descriptionSubstring} as a substring,
-	 * ignoring case.
+	 * ignoring case. Since the subtree is a range of ids of the tree's
+	 * {@link ECTree#freeze() frozen} layout, the result can be combined with
+	 * the tree's own query results.
 	 * 
 	 * @param description
 	 *            A case-insensitive query string
-	 * @return A sorted set of ECNodes matching the query
+	 * @return An unmodifiable sorted set of ECNodes matching the query; in
+	 *         earlier releases this was a new TreeSet
+	 * @throws IllegalStateException
+	 *             If this node has not been added to a tree
+	 * @see ECTree#findByDescriptionSubstring(String)
 	 */
-	public NavigableSet<ECNode> findByDescriptionSubstring(String descriptionSubstring) {
-		NavigableSet<ECNode> matches = new TreeSet<ECNode>();
-		for (ECNode node : this) {
-			if (node.getEcNumber() == null) {
-				if (descriptionSubstring == null) matches.add(node);
-			} else if (node.getDescription().contains(descriptionSubstring)) {
-				matches.add(node);
-			}
-		}
-		return matches;
+	public ECNodeSet findByDescriptionSubstring(String descriptionSubstring) {
+		return checkTree().findByDescription(this, descriptionSubstring, false);
 	}
 
 	/**
 	 * Searches the subtree rooted at this ECNode for the unique ECNode with EC
-	 * number {@code ecNumber}.
+	 * number {@code ecNumber}. If this node belongs to an {@link ECTree}, the
+	 * tree's index is used instead of walking the subtree.
 	 */
 	public ECNode findByEcNumber(ECNumber ecNumber) {
+		if (tree != null) {
+			ECNode node = tree.findByEcNumber(ecNumber);
+			if (node != null && isInSubtree(node)) return node;
+			return null;
+		}
 		for (ECNode node : this) {
 			if (node.getEcNumber() == null) {
 				if (ecNumber == null) return node;
@@ -170,22 +187,30 @@ public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 
 	/**
 	 * Searches the subtree rooted at this ECNode for every ECNode whose
-	 * description contains {@code descriptionSubstring}, ignoring case.
+	 * description equals {@code description}, ignoring case.
 	 * 
 	 * @param description
 	 *            A case-insensitive query string
-	 * @return A sorted set of ECNodes matching the query
+	 * @return An unmodifiable sorted set of ECNodes matching the query
+	 * @throws IllegalStateException
+	 *             If this node has not been added to a tree
+	 * @see #findByDescriptionSubstring(String)
 	 */
-	public NavigableSet<ECNode> findByExactDescription(String description) {
-		NavigableSet<ECNode> matches = new TreeSet<ECNode>();
-		for (ECNode node : this) {
-			if (node.getEcNumber() == null) {
-				if (description == null) matches.add(node);
-			} else if (node.getDescription().equalsIgnoreCase(description)) {
-				matches.add(node);
-			}
-		}
-		return matches;
+	public ECNodeSet findByExactDescription(String description) {
+		return checkTree().findByDescription(this, description, true);
+	}
+
+	private ECTree checkTree() {
+		if (tree == null) throw new IllegalStateException("Node " + ecNumber + " is not in a tree");
+		return tree;
+	}
+
+	/**
+	 * Returns the id of the description in the store of the tree, or -1 if
+	 * it is {@code null}.
+	 */
+	int getDescriptionId() {
+		return descriptionId;
 	}
 
 	public NavigableSet<ECNode> getChildren() {
@@ -207,9 +232,12 @@ public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 	 * <pre>
 	 * With a quinone or similar compound as acceptor.
 	 * </pre>
+	 * 
+	 * Once this node is added to a tree, descriptions are stored once each
+	 * per tree as UTF-8 and decoded when requested.
 	 */
 	public String getDescription() {
-		return description;
+		return descriptionId < 0 ? description : tree.descriptionStore().get(descriptionId);
 	}
 
 	public ECNumber getEcNumber() {
@@ -237,14 +265,17 @@ public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 	 * </pre>
 	 */
 	public Iterator<ECNode> inOrder() {
-		List<ECNode> visited = new ArrayList<>();
-		visited.add(this);
-		for (ECNode child : children) {
-			Iterator<ECNode> i = child.inOrder();
-			while (i.hasNext())
-				visited.add(i.next());
-		}
-		return visited.iterator();
+		return new InOrderIterator(this);
+	}
+
+	/**
+	 * Returns true if {@code node} is this node or one of its descendants.
+	 */
+	private boolean isInSubtree(ECNode node) {
+		int depth = getDepth();
+		while (node != null && node.getDepth() > depth)
+			node = node.getParent();
+		return node == this;
 	}
 
 	public boolean isRoot() {
@@ -259,6 +290,36 @@ public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 		return inOrder();
 	}
 
+	/**
+	 * Returns a parallel {@link Stream} over the subtree rooted at this node,
+	 * {@link #inOrder() in-order}.
+	 */
+	public Stream<ECNode> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	/**
+	 * Returns a {@link Spliterator} over the subtree rooted at this node,
+	 * {@link #inOrder() in-order}. If this node belongs to an {@link ECTree},
+	 * it is sized and splits on subtree boundaries.
+	 */
+	@Override
+	public Spliterator<ECNode> spliterator() {
+		if (tree == null) {
+			return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.SORTED
+					| Spliterator.DISTINCT | Spliterator.NONNULL);
+		}
+		return tree.spliterator(this);
+	}
+
+	/**
+	 * Returns a sequential {@link Stream} over the subtree rooted at this node,
+	 * {@link #inOrder() in-order}.
+	 */
+	public Stream<ECNode> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
 	/**
 	 * Prints an {@link #inOrder() in-order} representation of the subtree
 	 * rooted at this node.
@@ -281,6 +342,14 @@ public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 		this.parent = parent;
 	}
 
+	protected ECTree getTree() {
+		return tree;
+	}
+
+	protected void setTree(ECTree tree) {
+		this.tree = tree;
+	}
+
 	/**
 	 * Prints a string formatted as:
 	 * 
@@ -290,7 +359,142 @@ public class ECNode implements Iterable<ECNode>, Comparable<ECNode> {
 	 */
 	@Override
 	public String toString() {
-		return ecNumber + ": " + description;
+		return ecNumber + ": " + getDescription();
+	}
+
+	/**
+	 * Base class for the lazy traversal iterators. Fails fast when the tree
+	 * that owns the starting node is modified.
+	 */
+	private abstract static class TraversalIterator implements Iterator<ECNode> {
+
+		private final ECTree tree;
+		private final int expectedModCount;
+
+		TraversalIterator(ECNode start) {
+			tree = start.getTree();
+			expectedModCount = tree == null ? 0 : tree.getModCount();
+		}
+
+		@Override
+		public ECNode next() {
+			if (tree != null && tree.getModCount() != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) throw new NoSuchElementException();
+			return advance();
+		}
+
+		/**
+		 * Returns the next node. Only called when {@link #hasNext()} is true.
+		 */
+		protected abstract ECNode advance();
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("ECTrees do not support removal");
+		}
+	}
+
+	/**
+	 * Visits nodes in-order using a stack of child iterators.
+	 */
+	private static class InOrderIterator extends TraversalIterator {
+
+		private final Deque<Iterator<ECNode>> stack = new ArrayDeque<>();
+		private ECNode next;
+
+		InOrderIterator(ECNode start) {
+			super(start);
+			next = start;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		protected ECNode advance() {
+			ECNode current = next;
+			if (!current.getChildren().isEmpty()) stack.push(current.getChildren().iterator());
+			next = null;
+			while (!stack.isEmpty()) {
+				Iterator<ECNode> top = stack.peek();
+				if (top.hasNext()) {
+					next = top.next();
+					break;
+				}
+				stack.pop();
+			}
+			return current;
+		}
+	}
+
+	/**
+	 * Visits children before their parents using a stack of pending nodes and
+	 * their child iterators.
+	 */
+	private static class DepthFirstIterator extends TraversalIterator {
+
+		private final Deque<ECNode> nodes = new ArrayDeque<>();
+		private final Deque<Iterator<ECNode>> iterators = new ArrayDeque<>();
+
+		DepthFirstIterator(ECNode start) {
+			super(start);
+			descend(start);
+		}
+
+		/**
+		 * Pushes {@code node} and the chain of its first descendants.
+		 */
+		private void descend(ECNode node) {
+			while (true) {
+				Iterator<ECNode> children = node.getChildren().iterator();
+				nodes.push(node);
+				iterators.push(children);
+				if (!children.hasNext()) return;
+				node = children.next();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !nodes.isEmpty();
+		}
+
+		@Override
+		protected ECNode advance() {
+			ECNode current = nodes.pop();
+			iterators.pop();
+			if (!iterators.isEmpty() && iterators.peek().hasNext()) descend(iterators.peek().next());
+			return current;
+		}
+	}
+
+	/**
+	 * Visits nodes level by level using a queue of discovered nodes.
+	 */
+	private static class BreadthFirstIterator extends TraversalIterator {
+
+		private final Queue<ECNode> queue = new ArrayDeque<>();
+
+		BreadthFirstIterator(ECNode start) {
+			super(start);
+			queue.add(start);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !queue.isEmpty();
+		}
+
+		@Override
+		protected ECNode advance() {
+			ECNode current = queue.poll();
+			queue.addAll(current.getChildren());
+			return current;
+		}
 	}
 
 }
@@ -0,0 +1,379 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * An immutable set of nodes of one version of an {@link ECTree}, stored as one
+ * bit per node id. Because ids number nodes {@link ECTree#inOrder() in-order}
+ * , iterating the bits visits nodes in their natural order.
+ * 
+ * Sets returned by queries on the same tree, before it is next modified, can
+ * be combined with {@link #and(ECNodeSet)}, {@link #or(ECNodeSet)}, and
+ * {@link #andNot(ECNodeSet)}, each of which takes one pass over a word per 64
+ * nodes. For example, the dehydrogenases among the classes of depth 3 are
+ * {@code tree.findNodesOfDepth(3).and(tree.findByDescriptionSubstring("dehydrogenase"))}
+ * . {@link #size()}, {@link #contains(Object)}, and iteration also work on
+ * the bits directly; the remaining {@link NavigableSet} operations use a view
+ * that is built on first use.
+ * 
+ * In earlier releases, {@link ECTree#findByDescriptionSubstring(String)},
+ * {@link ECTree#findByExactDescription(String)},
+ * {@link ECTree#findNodesOfDepth(int)}, and the same description queries of
+ * {@link ECNode} returned TreeSets. These sets cannot be modified: {@code add}, {@code remove}, {@code removeIf},
+ * {@code retainAll}, {@code pollFirst}, and the other mutators throw
+ * {@link UnsupportedOperationException}. Code that modifies a result should
+ * copy it with {@code new TreeSet<>(result)}, or better, combine results with
+ * the operations above.
+ * 
+ * @author dmyersturnbull
+ */
+public final class ECNodeSet extends AbstractSet<ECNode> implements NavigableSet<ECNode> {
+
+	private final ECTree tree;
+	private final FrozenECTree layout;
+	private final long[] words;
+	private int cardinality = -1;
+	private NavigableSet<ECNode> view;
+
+	/**
+	 * Wraps {@code words}, which is not copied and must not be modified
+	 * afterward.
+	 */
+	ECNodeSet(ECTree tree, FrozenECTree layout, long[] words) {
+		this.tree = tree;
+		this.layout = layout;
+		this.words = words;
+	}
+
+	/**
+	 * Returns a new, empty array of words with a bit for each node of
+	 * {@code layout}.
+	 */
+	static long[] words(FrozenECTree layout) {
+		return new long[layout.size() + 63 >>> 6];
+	}
+
+	/**
+	 * Sets the bit for id {@code id} in {@code words}.
+	 */
+	static void set(long[] words, int id) {
+		words[id >>> 6] |= 1L << id;
+	}
+
+	/**
+	 * Clears the bits in {@code words} for ids below {@code from} or at or
+	 * above {@code to}.
+	 */
+	static void retainRange(long[] words, int from, int to) {
+		int first = from >>> 6;
+		int last = to >>> 6;
+		Arrays.fill(words, 0, Math.min(first, words.length), 0);
+		if (first < words.length) words[first] &= -1L << from;
+		if (last < words.length) {
+			words[last] &= ~(-1L << to);
+			Arrays.fill(words, last + 1, words.length, 0);
+		}
+	}
+
+	/**
+	 * Returns the set of ids {@code ids}.
+	 */
+	static ECNodeSet of(ECTree tree, FrozenECTree layout, int[] ids) {
+		long[] words = words(layout);
+		for (int id : ids)
+			set(words, id);
+		return new ECNodeSet(tree, layout, words);
+	}
+
+	/**
+	 * Returns the nodes in both this set and {@code other}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If {@code other} is from another tree or version
+	 */
+	public ECNodeSet and(ECNodeSet other) {
+		checkCompatible(other);
+		long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++)
+			result[i] = words[i] & other.words[i];
+		return new ECNodeSet(tree, layout, result);
+	}
+
+	/**
+	 * Returns the nodes in this set, {@code other}, or both.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If {@code other} is from another tree or version
+	 */
+	public ECNodeSet or(ECNodeSet other) {
+		checkCompatible(other);
+		long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++)
+			result[i] = words[i] | other.words[i];
+		return new ECNodeSet(tree, layout, result);
+	}
+
+	/**
+	 * Returns the nodes in this set but not in {@code other}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If {@code other} is from another tree or version
+	 */
+	public ECNodeSet andNot(ECNodeSet other) {
+		checkCompatible(other);
+		long[] result = new long[words.length];
+		for (int i = 0; i < words.length; i++)
+			result[i] = words[i] & ~other.words[i];
+		return new ECNodeSet(tree, layout, result);
+	}
+
+	/**
+	 * Returns true if this set and {@code other} were found on the same
+	 * version of the same tree, so that they can be combined.
+	 */
+	public boolean isCompatible(ECNodeSet other) {
+		return tree == other.tree && layout == other.layout;
+	}
+
+	private void checkCompatible(ECNodeSet other) {
+		if (!isCompatible(other)) {
+			throw new IllegalArgumentException("Node sets are from different trees or versions of a tree");
+		}
+	}
+
+	/**
+	 * Throws an IllegalArgumentException unless this set was found on
+	 * {@code tree} while it had layout {@code layout}.
+	 */
+	void checkFrom(ECTree tree, FrozenECTree layout) {
+		if (this.tree != tree || this.layout != layout) {
+			throw new IllegalArgumentException("Node set is not from this version of the tree");
+		}
+	}
+
+	/**
+	 * Returns the number of nodes in this set. The same as {@link #size()}.
+	 */
+	public int cardinality() {
+		if (cardinality < 0) {
+			int n = 0;
+			for (long word : words)
+				n += Long.bitCount(word);
+			cardinality = n;
+		}
+		return cardinality;
+	}
+
+	@Override
+	public int size() {
+		return cardinality();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nextId(0) < 0;
+	}
+
+	/**
+	 * Returns true if this set contains the node with id {@code id}.
+	 * 
+	 * @see ECTree#getNodeId(ECNumber)
+	 */
+	public boolean containsId(int id) {
+		return id >= 0 && id >>> 6 < words.length && (words[id >>> 6] & 1L << id) != 0;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof ECNode)) return false;
+		int id = layout.indexOf(((ECNode) o).getEcNumber());
+		return id >= 0 && containsId(id);
+	}
+
+	/**
+	 * Returns the first id in this set at or after {@code id}, or -1 if
+	 * there is none.
+	 */
+	public int nextId(int id) {
+		if (id < 0) id = 0;
+		int i = id >>> 6;
+		if (i >= words.length) return -1;
+		long word = words[i] & -1L << id;
+		while (word == 0) {
+			if (++i == words.length) return -1;
+			word = words[i];
+		}
+		return (i << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	/**
+	 * Returns the ids of the nodes in this set in increasing order.
+	 */
+	public int[] toIds() {
+		int[] ids = new int[cardinality()];
+		int n = 0;
+		for (int id = nextId(0); id >= 0; id = nextId(id + 1))
+			ids[n++] = id;
+		return ids;
+	}
+
+	@Override
+	public Iterator<ECNode> iterator() {
+		return new Iterator<ECNode>() {
+			private int next = nextId(0);
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public ECNode next() {
+				if (next < 0) throw new NoSuchElementException();
+				int current = next;
+				next = nextId(current + 1);
+				return node(current);
+			}
+		};
+	}
+
+	@Override
+	public ECNode first() {
+		int id = nextId(0);
+		if (id < 0) throw new NoSuchElementException();
+		return node(id);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof ECNodeSet && isCompatible((ECNodeSet) o)) {
+			return Arrays.equals(words, ((ECNodeSet) o).words);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return super.hashCode();
+	}
+
+	/**
+	 * Returns {@code null}, meaning nodes are in their natural order.
+	 */
+	@Override
+	public Comparator<? super ECNode> comparator() {
+		return null;
+	}
+
+	@Override
+	public ECNode last() {
+		return view().last();
+	}
+
+	@Override
+	public ECNode lower(ECNode e) {
+		return view().lower(e);
+	}
+
+	@Override
+	public ECNode floor(ECNode e) {
+		return view().floor(e);
+	}
+
+	@Override
+	public ECNode ceiling(ECNode e) {
+		return view().ceiling(e);
+	}
+
+	@Override
+	public ECNode higher(ECNode e) {
+		return view().higher(e);
+	}
+
+	@Override
+	public ECNode pollFirst() {
+		throw new UnsupportedOperationException("ECNodeSets are immutable");
+	}
+
+	@Override
+	public ECNode pollLast() {
+		throw new UnsupportedOperationException("ECNodeSets are immutable");
+	}
+
+	@Override
+	public Iterator<ECNode> descendingIterator() {
+		return view().descendingIterator();
+	}
+
+	@Override
+	public NavigableSet<ECNode> descendingSet() {
+		return view().descendingSet();
+	}
+
+	@Override
+	public NavigableSet<ECNode> subSet(ECNode fromElement, boolean fromInclusive, ECNode toElement,
+			boolean toInclusive) {
+		return view().subSet(fromElement, fromInclusive, toElement, toInclusive);
+	}
+
+	@Override
+	public NavigableSet<ECNode> headSet(ECNode toElement, boolean inclusive) {
+		return view().headSet(toElement, inclusive);
+	}
+
+	@Override
+	public NavigableSet<ECNode> tailSet(ECNode fromElement, boolean inclusive) {
+		return view().tailSet(fromElement, inclusive);
+	}
+
+	@Override
+	public SortedSet<ECNode> subSet(ECNode fromElement, ECNode toElement) {
+		return subSet(fromElement, true, toElement, false);
+	}
+
+	@Override
+	public SortedSet<ECNode> headSet(ECNode toElement) {
+		return headSet(toElement, false);
+	}
+
+	@Override
+	public SortedSet<ECNode> tailSet(ECNode fromElement) {
+		return tailSet(fromElement, true);
+	}
+
+	/**
+	 * Returns a view over the ids in this set, building it on first use. Racing
+	 * threads may each build one; they are equivalent.
+	 */
+	private NavigableSet<ECNode> view() {
+		NavigableSet<ECNode> v = view;
+		if (v == null) view = v = new NodeView(tree, layout, toIds());
+		return v;
+	}
+
+	private ECNode node(int id) {
+		if (tree == layout) return layout.node(id);
+		return tree.findByEcNumber(layout.numberOf(id));
+	}
+
+}
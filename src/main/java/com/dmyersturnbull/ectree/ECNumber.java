@@ -14,11 +14,61 @@
  */
 package com.dmyersturnbull.ectree;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
-public class ECNumber {
+/**
+ * An Enzyme Commission number such as "3.4.5", stored compactly. Up to four
+ * codes and the depth are packed into a single {@code long}, so that
+ * {@link #equals(Object)}, {@link #hashCode()}, {@link #compareTo(ECNumber)},
+ * and {@link #getParentNumber()} need no arrays.
+ * 
+ * The static {@code valueOf} methods return flyweight instances: equal numbers
+ * obtained through them are normally the same object. The cache is bounded:
+ * once it holds {@link #MAX_SHARED} numbers, which is several times the number
+ * of classes and enzymes in the nomenclature, other numbers are returned as
+ * new instances. Parsing a bulk dump full of unknown or malformed numbers
+ * therefore cannot grow it without limit. Compare numbers with
+ * {@link #equals(Object)}, not {@code ==}.
+ * 
+ * The packed layout, from the most significant bit, is one unused bit, four
+ * 15-bit fields holding each code plus one (0 when absent), and three bits
+ * holding the depth. A preliminary code such as "n12" sets the highest bit of
+ * its field instead, so it sorts after every ordinary code. Comparing packed
+ * values therefore orders numbers {@link ECNode#inOrder() in-order}.
+ * 
+ * @author dmyersturnbull
+ */
+public class ECNumber implements Comparable<ECNumber> {
 
-	private final int[] codes;
+	/**
+	 * The greatest depth of an EC number.
+	 */
+	public static final int MAX_DEPTH = 4;
+
+	/**
+	 * The greatest code allowed at any depth.
+	 */
+	public static final int MAX_CODE = (1 << 14) - 2;
+
+	/**
+	 * The greatest preliminary code, such as the 12 in "3.2.1.n12".
+	 */
+	public static final int MAX_PRELIMINARY_CODE = (1 << 14) - 1;
+
+	/**
+	 * The most distinct numbers the flyweight cache holds.
+	 */
+	public static final int MAX_SHARED = 1 << 16;
+
+	private static final int FIELD_BITS = 15;
+	private static final long PRELIMINARY_FLAG = 1L << 14;
+	private static final int DEPTH_BITS = 3;
+	private static final long FIELD_MASK = (1L << FIELD_BITS) - 1;
+	static final long DEPTH_MASK = (1L << DEPTH_BITS) - 1;
+
+	private static final Cache CACHE = new Cache();
+
+	private final long packed;
 
 	/**
 	 * @param codes
@@ -26,23 +76,251 @@ public class ECNumber {
 	 *            {@code codes[0]} is the top-level EC code
 	 */
 	public ECNumber(int[] codes) {
-		this.codes = codes;
+		this.packed = pack(codes, codes.length);
 	}
 
 	/**
 	 * @param code
 	 *            A string formatted as "x.x.x.x"; for example "1" or "3.4.5"
+	 * @see #parse(CharSequence)
 	 */
 	public ECNumber(String code) {
-		String[] parts = code.split("\\.");
-		codes = new int[parts.length];
-		for (int i = 0; i < parts.length; i++) {
-			try {
-				codes[i] = Integer.parseInt(parts[i]);
-			} catch (NumberFormatException e) {
-				throw new IllegalArgumentException("Bad EC number " + code, e);
+		this.packed = parsePacked(code, 0, code.length());
+		if (packed < 0) throw new IllegalArgumentException("Bad EC number " + code);
+	}
+
+	private ECNumber(long packed) {
+		this.packed = packed;
+	}
+
+	/**
+	 * Returns the shared ECNumber with packed representation {@code packed}.
+	 * 
+	 * @see #toLong()
+	 */
+	public static ECNumber fromLong(long packed) {
+		if (!isValid(packed)) {
+			throw new IllegalArgumentException("Bad packed EC number " + packed);
+		}
+		return CACHE.get(packed);
+	}
+
+	/**
+	 * Returns the shared ECNumber with codes {@code codes}.
+	 */
+	public static ECNumber valueOf(int... codes) {
+		return CACHE.get(pack(codes, codes.length));
+	}
+
+	/**
+	 * Returns the shared ECNumber with the first {@code depth} codes of
+	 * {@code codes}.
+	 */
+	static ECNumber valueOf(int[] codes, int depth) {
+		return CACHE.get(pack(codes, depth));
+	}
+
+	/**
+	 * Returns the shared ECNumber for a string formatted as "x.x.x.x".
+	 * 
+	 * @see #parse(CharSequence)
+	 */
+	public static ECNumber valueOf(String code) {
+		return parse(code);
+	}
+
+	/**
+	 * Parses an EC number and returns the shared instance. Besides plain
+	 * numbers such as "3.2.1.4", this accepts:
+	 * <ul>
+	 * <li>trailing dashes for classes, as in "3.2.1.-" or "3.2.-.-"</li>
+	 * <li>an "EC" prefix, as in "EC 3.2.1.4" or "EC:3.2.1.4"</li>
+	 * <li>preliminary codes, as in "3.2.1.n12"</li>
+	 * <li>surrounding whitespace, and spaces after dots as in "3. 2. 1.-"</li>
+	 * </ul>
+	 * No intermediate objects are created.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If {@code code} is not an EC number
+	 */
+	public static ECNumber parse(CharSequence code) {
+		return parse(code, 0, code.length());
+	}
+
+	/**
+	 * Parses the EC number in {@code code} from index {@code start} inclusive
+	 * to {@code end} exclusive. See {@link #parse(CharSequence)}.
+	 */
+	public static ECNumber parse(CharSequence code, int start, int end) {
+		long packed = parsePacked(code, start, end);
+		if (packed < 0) throw new IllegalArgumentException("Bad EC number " + code.subSequence(start, end));
+		return CACHE.get(packed);
+	}
+
+	/**
+	 * Parses the EC number held as ASCII in {@code length} bytes of
+	 * {@code bytes} starting at {@code offset}. See {@link #parse(CharSequence)}
+	 * .
+	 */
+	public static ECNumber parse(byte[] bytes, int offset, int length) {
+		long packed = parsePacked(null, bytes, null, offset, offset + length);
+		if (packed < 0) throw new IllegalArgumentException("Bad EC number " + new String(bytes, offset, length));
+		return CACHE.get(packed);
+	}
+
+	/**
+	 * Parses the EC number held as ASCII in {@code length} bytes of
+	 * {@code buffer} starting at absolute index {@code offset}. The buffer's
+	 * position is not changed. See {@link #parse(CharSequence)}.
+	 */
+	public static ECNumber parse(ByteBuffer buffer, int offset, int length) {
+		long packed = parsePacked(null, null, buffer, offset, offset + length);
+		if (packed < 0) {
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++)
+				bytes[i] = buffer.get(offset + i);
+			throw new IllegalArgumentException("Bad EC number " + new String(bytes));
+		}
+		return CACHE.get(packed);
+	}
+
+	/**
+	 * Parses an EC number without throwing, returning its packed
+	 * representation or -1 if it is malformed.
+	 */
+	static long parsePacked(CharSequence code, int start, int end) {
+		return parsePacked(code, null, null, start, end);
+	}
+
+	/**
+	 * Parses from exactly one of {@code chars}, {@code bytes}, or
+	 * {@code buffer}, returning the packed representation or -1.
+	 */
+	private static long parsePacked(CharSequence chars, byte[] bytes, ByteBuffer buffer, int start, int end) {
+		int i = start;
+		while (i < end && isSpace(charAt(chars, bytes, buffer, i)))
+			i++;
+		while (end > i && isSpace(charAt(chars, bytes, buffer, end - 1)))
+			end--;
+		if (end - i >= 2 && (charAt(chars, bytes, buffer, i) | 0x20) == 'e'
+				&& (charAt(chars, bytes, buffer, i + 1) | 0x20) == 'c') {
+			i += 2;
+			if (i < end && charAt(chars, bytes, buffer, i) == ':') i++;
+			while (i < end && charAt(chars, bytes, buffer, i) == ' ')
+				i++;
+		}
+		if (i == end) return -1;
+		long packed = 0;
+		int depth = 0;
+		int components = 0;
+		boolean dashed = false;
+		while (true) {
+			if (++components > MAX_DEPTH) return -1;
+			int c = charAt(chars, bytes, buffer, i);
+			if (c == '-') {
+				dashed = true;
+				i++;
+			} else {
+				if (dashed) return -1; // "3.-.1" is not a class
+				boolean preliminary = c == 'n';
+				if (preliminary) i++;
+				int limit = preliminary ? MAX_PRELIMINARY_CODE : MAX_CODE;
+				int code = 0;
+				int digits = i;
+				while (i < end && (c = charAt(chars, bytes, buffer, i) - '0') >= 0 && c <= 9) {
+					code = 10 * code + c;
+					if (code > limit) return -1;
+					i++;
+				}
+				if (i == digits) return -1;
+				depth++;
+				packed |= (preliminary ? PRELIMINARY_FLAG | code : code + 1L) << shift(depth);
 			}
+			if (i == end) break;
+			if (charAt(chars, bytes, buffer, i) != '.') return -1;
+			i++;
+			while (i < end && charAt(chars, bytes, buffer, i) == ' ')
+				i++;
+			if (i == end) return -1;
 		}
+		if (depth == 0) return -1; // "-.-.-.-" names no class
+		return packed | depth;
+	}
+
+	private static boolean isSpace(int c) {
+		return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+	}
+
+	private static int charAt(CharSequence chars, byte[] bytes, ByteBuffer buffer, int i) {
+		if (chars != null) return chars.charAt(i);
+		if (bytes != null) return bytes[i] & 0xFF;
+		return buffer.get(i) & 0xFF;
+	}
+
+	private static long pack(int[] codes, int depth) {
+		if (depth > MAX_DEPTH) {
+			throw new IllegalArgumentException("An EC number has at most " + MAX_DEPTH + " codes");
+		}
+		long packed = depth;
+		for (int i = 0; i < depth; i++) {
+			if (codes[i] < 0 || codes[i] > MAX_CODE) {
+				throw new IllegalArgumentException("EC code " + codes[i] + " is out of range");
+			}
+			packed |= (codes[i] + 1L) << shift(i + 1);
+		}
+		return packed;
+	}
+
+	/**
+	 * Returns the bits of a packed number that hold the code at depth
+	 * {@code depth}.
+	 */
+	static long fieldMask(int depth) {
+		return FIELD_MASK << shift(depth);
+	}
+
+	/**
+	 * Returns the depth encoded in the packed number {@code packed}.
+	 */
+	static int depthOf(long packed) {
+		return (int) (packed & DEPTH_MASK);
+	}
+
+	/**
+	 * Returns the bit offset of the field for depth {@code depth}.
+	 */
+	private static int shift(int depth) {
+		return DEPTH_BITS + (MAX_DEPTH - depth) * FIELD_BITS;
+	}
+
+	/**
+	 * Returns true if exactly the fields up to the encoded depth are present
+	 * and each holds a valid code.
+	 */
+	static boolean isValid(long packed) {
+		int depth = (int) (packed & DEPTH_MASK);
+		if (packed < 0 || depth > MAX_DEPTH) return false;
+		long rest = packed & ~DEPTH_MASK;
+		for (int d = 1; d <= depth; d++) {
+			long field = rest >>> shift(d) & FIELD_MASK;
+			if (field == 0) return false;
+			rest &= ~(FIELD_MASK << shift(d));
+		}
+		return rest == 0;
+	}
+
+	private static int mix(long packed) {
+		long h = packed * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ h >>> 32);
+	}
+
+	/**
+	 * Orders numbers as in an {@link ECNode#inOrder() in-order} traversal, so
+	 * that a number comes before its descendants and after its ancestors.
+	 */
+	@Override
+	public int compareTo(ECNumber other) {
+		return Long.compare(packed, other.packed);
 	}
 
 	@Override
@@ -51,15 +329,29 @@ public class ECNumber {
 		if (obj == null) return false;
 		if (getClass() != obj.getClass()) return false;
 		ECNumber other = (ECNumber) obj;
-		if (!Arrays.equals(codes, other.codes)) return false;
-		return true;
+		return packed == other.packed;
 	}
 
 	/**
 	 * Returns the EC number component corresponding to depth {@code depth}.
+	 * For a preliminary code such as "n12", this is the number after the "n",
+	 * so "3.2.1.n12" and "3.2.1.12" have the same code at depth 4. Callers
+	 * that compare codes must also compare
+	 * {@link #isPreliminaryAtDepth(int)}.
+	 * 
+	 * @see #isPreliminaryAtDepth(int)
 	 */
 	public int getCodeAtDepth(int depth) {
-		return codes[depth - 1];
+		long field = field(depth);
+		if ((field & PRELIMINARY_FLAG) != 0) return (int) (field & ~PRELIMINARY_FLAG);
+		return (int) field - 1;
+	}
+
+	private long field(int depth) {
+		if (depth < 1 || depth > getDepth()) {
+			throw new IndexOutOfBoundsException("No code at depth " + depth + " of " + this);
+		}
+		return packed >>> shift(depth) & FIELD_MASK;
 	}
 
 	/**
@@ -67,25 +359,59 @@ public class ECNumber {
 	 * root has depth 0, and its children (top-level EC codes) have depth 1.
 	 */
 	public int getDepth() {
-		return codes.length;
+		return (int) (packed & DEPTH_MASK);
 	}
 
 	/**
-	 * Returns the EC number this ECNumber's parent is expected to have.
+	 * Returns the EC number this ECNumber's parent is expected to have. The
+	 * result is a shared instance, so repeated calls do not allocate.
 	 */
 	public ECNumber getParentNumber() {
-		int[] p = new int[codes.length - 1];
-		for (int i = 0; i < codes.length - 1; i++)
-			p[i] = codes[i];
-		return new ECNumber(p);
+		int depth = getDepth();
+		if (depth == 0) throw new IllegalStateException("An empty EC number has no parent");
+		return CACHE.get(parentOf(packed));
+	}
+
+	/**
+	 * Returns the packed parent number of the packed number {@code packed} of
+	 * depth at least 1; 0 for a top-level class.
+	 */
+	static long parentOf(long packed) {
+		int depth = depthOf(packed);
+		return packed & ~(FIELD_MASK << shift(depth)) & ~DEPTH_MASK | depth - 1;
 	}
 
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + Arrays.hashCode(codes);
-		return result;
+		return mix(packed);
+	}
+
+	/**
+	 * Returns true if the code at depth {@code depth} is preliminary, as in
+	 * "3.2.1.n12".
+	 */
+	public boolean isPreliminaryAtDepth(int depth) {
+		return (field(depth) & PRELIMINARY_FLAG) != 0;
+	}
+
+	/**
+	 * Returns true if the code at any depth is preliminary.
+	 */
+	public boolean isPreliminary() {
+		for (int d = 1; d <= getDepth(); d++) {
+			if (isPreliminaryAtDepth(d)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the packed representation of this number, which orders numbers
+	 * in the same way as {@link #compareTo(ECNumber)}.
+	 * 
+	 * @see #fromLong(long)
+	 */
+	public long toLong() {
+		return packed;
 	}
 
 	/**
@@ -95,11 +421,70 @@ public class ECNumber {
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
-		for (int i = 0; i < codes.length; i++) {
-			sb.append(codes[i]);
-			if (i < codes.length - 1) sb.append(".");
+		int depth = getDepth();
+		for (int i = 1; i <= depth; i++) {
+			if (isPreliminaryAtDepth(i)) sb.append("n");
+			sb.append(getCodeAtDepth(i));
+			if (i < depth) sb.append(".");
 		}
 		return sb.toString();
 	}
 
+	/**
+	 * An open-addressing table of shared instances. Lookups of numbers that are
+	 * already present take no lock; insertions are synchronized and publish a
+	 * resized table through a volatile write. Readers that race with an
+	 * insertion miss and fall back to the synchronized path. Once the table
+	 * holds {@link #MAX_SHARED} numbers, misses return unshared instances.
+	 */
+	private static final class Cache {
+
+		private volatile ECNumber[] table = new ECNumber[1024];
+		private volatile boolean full;
+		private int size;
+
+		ECNumber get(long packed) {
+			ECNumber[] t = table;
+			int mask = t.length - 1;
+			for (int i = mix(packed) & mask;; i = i + 1 & mask) {
+				ECNumber e = t[i];
+				if (e == null) return full ? new ECNumber(packed) : insert(packed);
+				if (e.packed == packed) return e;
+			}
+		}
+
+		private synchronized ECNumber insert(long packed) {
+			ECNumber[] t = table;
+			int slot = find(t, packed);
+			if (t[slot] != null) return t[slot];
+			if (full) return new ECNumber(packed);
+			if (2 * (size + 1) > t.length) {
+				ECNumber[] resized = new ECNumber[2 * t.length];
+				for (ECNumber e : t) {
+					if (e != null) resized[find(resized, e.packed)] = e;
+				}
+				t = resized;
+				slot = find(t, packed);
+			}
+			ECNumber number = new ECNumber(packed);
+			t[slot] = number;
+			size++;
+			table = t;
+			if (size == MAX_SHARED) full = true;
+			return number;
+		}
+
+		/**
+		 * Returns the slot holding {@code packed}, or the empty slot where it
+		 * belongs.
+		 */
+		private static int find(ECNumber[] t, long packed) {
+			int mask = t.length - 1;
+			int i = mix(packed) & mask;
+			while (t[i] != null && t[i].packed != packed)
+				i = i + 1 & mask;
+			return i;
+		}
+	}
+
 }
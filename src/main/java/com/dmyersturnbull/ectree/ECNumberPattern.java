@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+/**
+ * A pattern over EC numbers such as {@code 3.2.1.*} or {@code 3.*.1}, where
+ * {@code *} matches any code. Trailing dashes mean that the number ends there,
+ * as in SIB files, so {@code 3.2.-.-} matches only 3.2. The pattern matches
+ * numbers of exactly its depth. Matching compares the fixed codes and depth
+ * of a {@link ECNumber#toLong() packed number} under a bit mask.
+ * 
+ * @author dmyersturnbull
+ */
+class ECNumberPattern {
+
+	private final int depth;
+	private final long mask;
+	private final long value;
+
+	/**
+	 * The number of leading fixed codes
+	 */
+	private final int prefixDepth;
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             If {@code pattern} is malformed
+	 */
+	ECNumberPattern(String pattern) {
+		String s = pattern.trim();
+		if (s.regionMatches(true, 0, "EC", 0, 2)) {
+			s = s.substring(2).trim();
+			if (s.startsWith(":")) s = s.substring(1).trim();
+		}
+		String[] parts = s.split("\\.", -1);
+		int depth = parts.length;
+		while (depth > 1 && parts[depth - 1].trim().equals("-"))
+			depth--;
+		if (depth > ECNumber.MAX_DEPTH) throw new IllegalArgumentException("Bad EC number pattern " + pattern);
+		StringBuilder example = new StringBuilder();
+		long mask = ECNumber.DEPTH_MASK;
+		int prefixDepth = -1;
+		for (int d = 1; d <= depth; d++) {
+			String part = parts[d - 1].trim();
+			if (d > 1) example.append('.');
+			if (part.equals("*")) {
+				example.append('1');
+				if (prefixDepth < 0) prefixDepth = d - 1;
+			} else {
+				example.append(part);
+				mask |= ECNumber.fieldMask(d);
+			}
+		}
+		long packed = ECNumber.parsePacked(example, 0, example.length());
+		if (packed < 0 || ECNumber.depthOf(packed) != depth) {
+			throw new IllegalArgumentException("Bad EC number pattern " + pattern);
+		}
+		this.depth = depth;
+		this.mask = mask;
+		this.value = packed & mask;
+		this.prefixDepth = prefixDepth < 0 ? depth : prefixDepth;
+	}
+
+	/**
+	 * Creates the pattern matching the children of {@code parent}, which is
+	 * {@code null} for the root.
+	 */
+	ECNumberPattern(ECNumber parent) {
+		long packed = parent == null ? 0 : parent.toLong();
+		int parentDepth = ECNumber.depthOf(packed);
+		long mask = ECNumber.DEPTH_MASK;
+		for (int d = 1; d <= parentDepth; d++)
+			mask |= ECNumber.fieldMask(d);
+		this.depth = parentDepth + 1;
+		this.mask = mask;
+		this.value = packed & ~ECNumber.DEPTH_MASK | depth;
+		this.prefixDepth = parentDepth;
+	}
+
+	/**
+	 * Returns the number made of the leading fixed codes, whose subtree holds
+	 * every match, or {@code null} if the first code is a wildcard.
+	 */
+	ECNumber getPrefix() {
+		if (prefixDepth == 0) return null;
+		long prefix = prefixDepth;
+		for (int d = 1; d <= prefixDepth; d++)
+			prefix |= value & ECNumber.fieldMask(d);
+		return ECNumber.fromLong(prefix);
+	}
+
+	/**
+	 * Returns the depth of every number this pattern matches.
+	 */
+	int getDepth() {
+		return depth;
+	}
+
+	boolean matches(long packed) {
+		return (packed & mask) == value;
+	}
+
+	/**
+	 * Returns true if the subtree of the node with packed number
+	 * {@code packed} may hold matches other than itself.
+	 */
+	boolean mayMatchBelow(long packed) {
+		int d = ECNumber.depthOf(packed);
+		if (d >= depth) return false;
+		for (int k = 1; k <= d; k++) {
+			long field = ECNumber.fieldMask(k);
+			if ((mask & field) != 0 && (packed & field) != (value & field)) return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Resolves many EC number strings to nodes of an {@link ECTree} at once, as
+ * when mapping a column of annotations. Strings are parsed without creating
+ * {@link ECNumber ECNumbers}, and recent strings are remembered in a bounded
+ * cache, so repeated values cost a hash and a comparison. Partial numbers such
+ * as {@code 3.2.-.-} resolve to their class; malformed, unknown, and obsolete
+ * numbers resolve to -1 (or {@code null}) rather than throwing.
+ * 
+ * Results are node ids as in {@link ECTree#getNodeId(ECNumber)}. If the tree
+ * is modified, the next batch resolves against the new tree. A resolver may be
+ * shared between threads as long as the tree is not modified meanwhile.
+ * 
+ * @author dmyersturnbull
+ * @see ECTree#resolver()
+ */
+public final class ECResolver {
+
+	/**
+	 * The number of strings per task in the parallel methods.
+	 */
+	private static final int CHUNK_SIZE = 4096;
+
+	private final ECTree tree;
+	private final int cacheSize;
+	private volatile FrozenECTree frozen;
+	private volatile Entry[] cache;
+
+	/**
+	 * @param cacheSize
+	 *            The maximum number of strings to remember; rounded up to a
+	 *            power of 2
+	 */
+	ECResolver(ECTree tree, int cacheSize) {
+		if (cacheSize < 1) throw new IllegalArgumentException("Cache size " + cacheSize + " is not positive");
+		this.tree = tree;
+		this.cacheSize = Integer.highestOneBit(Math.min(cacheSize, 1 << 29) * 2 - 1);
+		refresh();
+	}
+
+	/**
+	 * Returns the id of the node with EC number {@code ecNumber}, or -1 if it
+	 * is {@code null}, malformed, or not in the tree.
+	 */
+	public int resolveId(CharSequence ecNumber) {
+		return resolve(ecNumber, refresh(), cache);
+	}
+
+	/**
+	 * Returns the node with EC number {@code ecNumber}, or {@code null} if it
+	 * is {@code null}, malformed, or not in the tree.
+	 */
+	public ECNode resolve(CharSequence ecNumber) {
+		int id = resolveId(ecNumber);
+		return id < 0 ? null : tree.getNode(id);
+	}
+
+	/**
+	 * Resolves each of {@code ecNumbers} like {@link #resolveId(CharSequence)}.
+	 */
+	public int[] resolveIds(List<? extends CharSequence> ecNumbers) {
+		FrozenECTree frozen = refresh();
+		Entry[] cache = this.cache;
+		int[] ids = new int[ecNumbers.size()];
+		int i = 0;
+		for (CharSequence ecNumber : ecNumbers)
+			ids[i++] = resolve(ecNumber, frozen, cache);
+		return ids;
+	}
+
+	/**
+	 * Resolves each of {@code ecNumbers} like {@link #resolveId(CharSequence)}.
+	 */
+	public int[] resolveIds(CharSequence[] ecNumbers) {
+		return resolveIds(Arrays.asList(ecNumbers));
+	}
+
+	/**
+	 * Resolves each of {@code ecNumbers} like {@link #resolveId(CharSequence)},
+	 * in the order they are returned.
+	 */
+	public int[] resolveIds(Iterator<? extends CharSequence> ecNumbers) {
+		FrozenECTree frozen = refresh();
+		Entry[] cache = this.cache;
+		int[] ids = new int[64];
+		int n = 0;
+		while (ecNumbers.hasNext()) {
+			if (n == ids.length) ids = Arrays.copyOf(ids, 2 * n);
+			ids[n++] = resolve(ecNumbers.next(), frozen, cache);
+		}
+		return Arrays.copyOf(ids, n);
+	}
+
+	/**
+	 * Resolves each of {@code ecNumbers} like {@link #resolveIds(List)}, but
+	 * in parallel chunks. {@code ecNumbers} should support fast random access.
+	 */
+	public int[] resolveIdsParallel(List<? extends CharSequence> ecNumbers) {
+		FrozenECTree frozen = refresh();
+		Entry[] cache = this.cache;
+		int[] ids = new int[ecNumbers.size()];
+		int chunks = (ids.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			int end = Math.min(ids.length, (chunk + 1) * CHUNK_SIZE);
+			for (int i = chunk * CHUNK_SIZE; i < end; i++)
+				ids[i] = resolve(ecNumbers.get(i), frozen, cache);
+		});
+		return ids;
+	}
+
+	/**
+	 * Resolves each of {@code ecNumbers} like {@link #resolveIdsParallel(List)}.
+	 */
+	public int[] resolveIdsParallel(CharSequence[] ecNumbers) {
+		return resolveIdsParallel(Arrays.asList(ecNumbers));
+	}
+
+	/**
+	 * Returns the node for each id in {@code ids}, or {@code null} where the id
+	 * is -1.
+	 */
+	public ECNode[] getNodes(int[] ids) {
+		refresh();
+		ECNode[] nodes = new ECNode[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i] >= 0) nodes[i] = tree.getNode(ids[i]);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Returns the current snapshot of the tree, clearing the cache if the tree
+	 * has changed since the last call.
+	 */
+	private FrozenECTree refresh() {
+		FrozenECTree current = tree.freeze();
+		if (current != frozen) {
+			cache = new Entry[cacheSize];
+			frozen = current;
+		}
+		return current;
+	}
+
+	private static int resolve(CharSequence ecNumber, FrozenECTree frozen, Entry[] cache) {
+		if (ecNumber == null) return -1;
+		int hash = hash(ecNumber);
+		int slot = (hash ^ hash >>> 16) & cache.length - 1;
+		Entry entry = cache[slot];
+		if (entry != null && entry.hash == hash && contentEquals(entry.key, ecNumber)) return entry.id;
+		long packed = ECNumber.parsePacked(ecNumber, 0, ecNumber.length());
+		int id = packed > 0 ? frozen.indexOf(packed) : -1;
+		if (id < 0) id = -1;
+		// entries are immutable, so racing writers at worst evict each other
+		cache[slot] = new Entry(ecNumber.toString(), hash, id);
+		return id;
+	}
+
+	/**
+	 * Returns the same hash as {@link String#hashCode()}.
+	 */
+	private static int hash(CharSequence chars) {
+		int hash = 0;
+		for (int i = 0; i < chars.length(); i++)
+			hash = 31 * hash + chars.charAt(i);
+		return hash;
+	}
+
+	private static boolean contentEquals(String key, CharSequence chars) {
+		if (key.length() != chars.length()) return false;
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != chars.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	private static final class Entry {
+		final String key;
+		final int hash;
+		final int id;
+
+		Entry(String key, int hash, int id) {
+			this.key = key;
+			this.hash = hash;
+			this.id = id;
+		}
+	}
+
+}
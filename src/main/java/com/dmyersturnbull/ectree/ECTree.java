@@ -14,13 +14,24 @@
  */
 package com.dmyersturnbull.ectree;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.NavigableSet;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * A tree structure for Enzyme Commission numbers.
  * 
+ * Besides iteration, ECTrees support {@link #stream() sequential} and
+ * {@link #parallelStream() parallel} streams, which split the work on subtree
+ * boundaries.
+ * 
  * @author dmyersturnbull
  * @see {@link ECNode}
  */
@@ -28,11 +39,55 @@ public class ECTree implements Iterable<ECNode> {
 
 	private ECNode root;
 
+	/**
+	 * The descriptions of the nodes, which are moved here when the nodes are
+	 * added; {@code null} for trees without an index
+	 */
+	private final DescriptionStore descriptions;
+
+	/**
+	 * Every node in this tree keyed by its EC number; the root is keyed by
+	 * {@code null}.
+	 */
+	private final Map<ECNumber, ECNode> index;
+
+	/**
+	 * The number of structural modifications, used by iterators to fail fast.
+	 */
+	private int modCount;
+
+	private boolean indexingDescriptions;
+	private DescriptionIndex descriptionIndex;
+	private int descriptionIndexModCount;
+
+	private FrozenECTree frozen;
+	private int frozenModCount;
+
+	private LevelViews levelViews;
+
 	/**
 	 * Creates a new ECTree. The root does not need to be added separately.
 	 */
 	public ECTree() {
 		root = new ECNode(null, null);
+		root.setTree(this);
+		descriptions = new DescriptionStore();
+		index = new HashMap<>();
+		index.put(null, root);
+	}
+
+	/**
+	 * Creates a tree without an index.
+	 * 
+	 * @param root
+	 *            The root, or {@code null} if the subclass supplies its own
+	 *            nodes through {@link #getRoot()} and
+	 *            {@link #findByEcNumber(ECNumber)}
+	 */
+	ECTree(ECNode root) {
+		this.root = root;
+		index = null;
+		descriptions = null;
 	}
 
 	/**
@@ -40,13 +95,14 @@ public class ECTree implements Iterable<ECNode> {
 	 * parent of {@code node} must have already been added.
 	 */
 	public void add(ECNode node) {
-		if (findByEcNumber(node.getEcNumber()) != null) {
-			throw new IllegalArgumentException("Parent " + node.getEcNumber() + " already exists");
+		ECNumber number = node.getEcNumber();
+		if (index.containsKey(number)) {
+			throw new IllegalArgumentException("Node " + number + " already exists");
 		}
-		addFast(node);
-		if (node.getParent() == null && node.getParent().getDepth() != 0) {
-			throw new IllegalArgumentException("Parent " + node.getParent().getEcNumber() + " does not exist yet");
+		if (number.getDepth() > 1 && !index.containsKey(number.getParentNumber())) {
+			throw new IllegalArgumentException("Parent " + number.getParentNumber() + " does not exist yet");
 		}
+		addFast(node);
 	}
 
 	/**
@@ -56,79 +112,509 @@ public class ECTree implements Iterable<ECNode> {
 	 */
 	protected void addFast(ECNode node) {
 		ECNumber parentNumber = node.getEcNumber().getParentNumber();
-		ECNode parent = findByEcNumber(parentNumber);
+		ECNode parent = index.get(parentNumber);
 		if (parent == null) parent = root;
 		parent.addChild(node);
 		node.setParent(parent);
+		node.storeDescription(descriptions);
+		node.setTree(this);
+		index.put(node.getEcNumber(), node);
+		modCount++;
 	}
 
 	/**
 	 * Returns a breadth-first iterator over ECNodes in this tree.
 	 */
 	public Iterator<ECNode> breadthFirst() {
-		return root.breadthFirst();
+		return getRoot().breadthFirst();
 	}
 
 	/**
 	 * Returns a depth-first iterator over ECNodes in this tree.
 	 */
 	public Iterator<ECNode> depthFirst() {
-		return root.depthFirst();
+		return getRoot().depthFirst();
 	}
 
 	/**
 	 * Searches this tree for every ECNode whose description contains
-	 * {@code descriptionSubstring} as a substring, ignoring case.
+	 * {@code descriptionSubstring} as a substring, ignoring case. Uses the
+	 * description index if {@link #indexDescriptions() enabled}. If this tree
+	 * was modified since its last query, it is first {@link #freeze() frozen}
+	 * again, which takes time linear in its size.
 	 * 
 	 * @param description
 	 *            A case-insensitive query string
-	 * @return A sorted set of ECNodes matching the query
+	 * @return An unmodifiable sorted set of ECNodes matching the query; in
+	 *         earlier releases this was a new TreeSet, so callers that modify
+	 *         the result must now copy it first (see {@link ECNodeSet})
+	 */
+	public ECNodeSet findByDescriptionSubstring(String descriptionSubstring) {
+		return findByDescriptionSubstring(descriptionSubstring, null);
+	}
+
+	/**
+	 * Searches the nodes in {@code within} for those whose description
+	 * contains {@code descriptionSubstring}, ignoring case. Without a
+	 * description index, only the nodes in {@code within} are checked.
+	 * 
+	 * @param within
+	 *            A set found on this tree since it was last modified, or
+	 *            {@code null} to search every node
+	 * @throws IllegalArgumentException
+	 *             If {@code within} is from another tree or version
 	 */
-	public NavigableSet<ECNode> findByDescriptionSubstring(String descriptionSubstring) {
-		return root.findByDescriptionSubstring(descriptionSubstring);
+	public ECNodeSet findByDescriptionSubstring(String descriptionSubstring, ECNodeSet within) {
+		return findByDescription(descriptionSubstring, within, false);
 	}
 
 	/**
 	 * Searches this tree for the unique ECNode with EC number {@code ecNumber}.
+	 * This is a constant-time lookup.
 	 */
 	public ECNode findByEcNumber(ECNumber ecNumber) {
-		return root.findByEcNumber(ecNumber);
+		return index.get(ecNumber);
 	}
 
 	/**
 	 * Searches this tree for the unique ECNode with EC number {@code ecNumber}.
 	 */
 	public ECNode findByEcNumber(String ecNumber) {
-		return root.findByEcNumber(ecNumber);
+		return findByEcNumber(new ECNumber(ecNumber));
 	}
 
 	/**
-	 * Searches this tree for every ECNode whose description contains
-	 * {@code descriptionSubstring}, ignoring case.
+	 * Searches this tree for up to {@code limit} ECNodes whose descriptions
+	 * are within Levenshtein distance {@code maxDistance} of
+	 * {@code description}, ignoring case and a trailing period. With the
+	 * description index {@link #indexDescriptions() enabled}, candidates are
+	 * the nodes that share enough trigrams with the query, so most nodes are
+	 * never compared; otherwise every node is compared.
+	 * 
+	 * @return The matching nodes, nearest first and then in-order
+	 */
+	public List<ECNode> findBySimilarDescription(String description, int maxDistance, int limit) {
+		checkSimilarityArguments(maxDistance, limit);
+		DescriptionIndex index = getDescriptionIndex();
+		if (index == null) return DescriptionIndex.scanSimilar(this, description, maxDistance, limit);
+		return index.findSimilar(description, maxDistance, limit);
+	}
+
+	/**
+	 * Returns up to {@code limit} ECNodes whose descriptions best match the
+	 * words in {@code query}, ranked by BM25 relevance. Words are runs of
+	 * letters and digits, ignoring case. A word index is built on the first
+	 * search and kept until this tree is next modified; a search scores only
+	 * nodes containing a query word and keeps the best in a bounded heap.
+	 * 
+	 * @return The best matches, best first; ties are in-order
+	 */
+	public List<ECNode> searchDescriptions(String query, int limit) {
+		return searchDescriptions(freeze(), query, limit, 0);
+	}
+
+	/**
+	 * Returns the best matches for {@code query} like
+	 * {@link #searchDescriptions(String, int)}, but only in the subtree of
+	 * {@code subtree}, which must belong to this tree.
+	 */
+	public List<ECNode> searchDescriptions(String query, int limit, ECNode subtree) {
+		return searchDescriptions(freeze(), query, limit, getNodeId(subtree));
+	}
+
+	private List<ECNode> searchDescriptions(FrozenECTree layout, String query, int limit, int id) {
+		if (limit < 0) throw new IllegalArgumentException("Limit " + limit + " is negative");
+		List<ECNode> matches = new ArrayList<ECNode>();
+		for (int match : layout.textIndex().search(query, limit, id, layout.end(id)))
+			matches.add(layout == this ? layout.node(match) : findByEcNumber(layout.numberOf(match)));
+		return matches;
+	}
+
+	static void checkSimilarityArguments(int maxDistance, int limit) {
+		if (maxDistance < 0) throw new IllegalArgumentException("Distance " + maxDistance + " is negative");
+		if (limit < 0) throw new IllegalArgumentException("Limit " + limit + " is negative");
+	}
+
+	/**
+	 * Returns every node whose EC number matches {@code pattern}, in which
+	 * {@code *} matches any code, such as {@code 3.2.1.*} for the enzymes in
+	 * 3.2.1 or {@code 3.*.1} for the first sub-subclass of every subclass of 3.
+	 * As in SIB files, trailing dashes end the number, so {@code 3.2.-.-}
+	 * matches only 3.2. The result is an unmodifiable view that is found
+	 * lazily: the subtree of the leading fixed codes is found by binary
+	 * search, and subtrees that cannot match are skipped. Its own
+	 * {@link NavigableSet#subSet(Object, boolean, Object, boolean) subSet},
+	 * {@link NavigableSet#headSet(Object, boolean) headSet}, and
+	 * {@link NavigableSet#tailSet(Object, boolean) tailSet} are also views, so
+	 * the children of 2.7 with codes above 10 are the
+	 * {@code tailSet(findByEcNumber("2.7.10"), false)} of
+	 * {@code findByPattern("2.7.*")}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If {@code pattern} is malformed
+	 */
+	public NavigableSet<ECNode> findByPattern(String pattern) {
+		ECNumberPattern parsed = new ECNumberPattern(pattern);
+		FrozenECTree layout = freeze();
+		ECNumber prefix = parsed.getPrefix();
+		int id = prefix == null ? 0 : layout.getNodeId(prefix);
+		if (id < 0) return new NodeView(this, 0, 0, parsed);
+		return new NodeView(this, id, layout.end(id), parsed);
+	}
+
+	/**
+	 * Returns every node whose EC number is from {@code from} to {@code to}
+	 * inclusive, in {@link #inOrder() in-order} order, as an unmodifiable
+	 * lazy view. For example, from 1.1 to 1.3 includes 1.1.1 and 1.2 but not
+	 * 1.3.1, which follows 1.3.
+	 * 
+	 * @see #findByRange(ECNumber, boolean, ECNumber, boolean)
+	 */
+	public NavigableSet<ECNode> findByRange(ECNumber from, ECNumber to) {
+		return findByRange(from, true, to, true);
+	}
+
+	/**
+	 * Returns every node whose EC number is between {@code from} and
+	 * {@code to} in {@link #inOrder() in-order} order, as an unmodifiable
+	 * lazy view found by binary search. Either bound may be {@code null} for
+	 * no bound.
+	 */
+	public NavigableSet<ECNode> findByRange(ECNumber from, boolean fromInclusive, ECNumber to, boolean toInclusive) {
+		FrozenECTree layout = freeze();
+		int lo = from == null ? 0 : bound(layout, from, !fromInclusive);
+		int hi = to == null ? layout.size() : bound(layout, to, toInclusive);
+		return new NodeView(this, lo, hi, null);
+	}
+
+	/**
+	 * Returns the first id whose number is not less than {@code number}, or
+	 * greater than it if {@code after}.
+	 */
+	private static int bound(FrozenECTree layout, ECNumber number, boolean after) {
+		int i = layout.indexOf(number);
+		if (i < 0) return -i - 1;
+		return after ? i + 1 : i;
+	}
+
+	/**
+	 * Searches this tree for every ECNode whose description equals
+	 * {@code description}, ignoring case. Uses the description index if
+	 * {@link #indexDescriptions() enabled}.
 	 * 
 	 * @param description
 	 *            A case-insensitive query string
-	 * @return A sorted set of ECNodes matching the query
+	 * @return An unmodifiable sorted set of ECNodes matching the query
+	 * @see #findByDescriptionSubstring(String)
+	 */
+	public ECNodeSet findByExactDescription(String description) {
+		return findByExactDescription(description, null);
+	}
+
+	/**
+	 * Searches the nodes in {@code within} for those whose description equals
+	 * {@code description}, ignoring case.
+	 * 
+	 * @param within
+	 *            A set found on this tree since it was last modified, or
+	 *            {@code null} to search every node
+	 * @throws IllegalArgumentException
+	 *             If {@code within} is from another tree or version
+	 * @see #findByDescriptionSubstring(String, ECNodeSet)
+	 */
+	public ECNodeSet findByExactDescription(String description, ECNodeSet within) {
+		return findByDescription(description, within, true);
+	}
+
+	/**
+	 * Sets a bit for each matching id, using the description index or else
+	 * the descriptions stored with the {@link #freeze() frozen} layout. A
+	 * {@code null} query matches only the root, whose description is
+	 * {@code null}.
 	 */
-	public NavigableSet<ECNode> findByExactDescription(String description) {
-		return root.findByExactDescription(description);
+	private ECNodeSet findByDescription(String query, ECNodeSet within, boolean exact) {
+		FrozenECTree layout = freeze();
+		return findByDescription(layout, query, within, 0, layout.size(), exact);
 	}
 
-	public NavigableSet<ECNode> findNodesOfDepth(int depth) {
-		NavigableSet<ECNode> matches = new TreeSet<ECNode>();
-		Iterator<ECNode> iter = this.breadthFirst();
-		while (iter.hasNext()) {
-			ECNode node = iter.next();
-			if (node.getDepth() == depth) matches.add(node);
-			if (node.getDepth() > depth) break; // take advantage of BFS
+	/**
+	 * Finds the matching nodes in the subtree of {@code subtree}, which are
+	 * the ids from its own up to the end of its subtree.
+	 * 
+	 * @see ECNode#findByDescriptionSubstring(String)
+	 */
+	ECNodeSet findByDescription(ECNode subtree, String query, boolean exact) {
+		FrozenECTree layout = freeze();
+		int id = layout.getNodeId(subtree.getEcNumber());
+		if (id < 0) throw new IllegalArgumentException("Node " + subtree.getEcNumber() + " is not in this tree");
+		return findByDescription(layout, query, null, id, layout.end(id), exact);
+	}
+
+	/**
+	 * Finds the matching nodes with ids from {@code from} to {@code to},
+	 * exclusive. {@code within} is only given for the whole range.
+	 */
+	private ECNodeSet findByDescription(FrozenECTree layout, String query, ECNodeSet within, int from, int to,
+			boolean exact) {
+		if (within != null) within.checkFrom(this, layout);
+		long[] matches = ECNodeSet.words(layout);
+		DescriptionIndex index = query == null ? null : getDescriptionIndex();
+		if (query == null) {
+			if (from == 0) ECNodeSet.set(matches, 0);
+		} else if (index != null) {
+			if (exact) {
+				index.findByExact(query, matches);
+			} else {
+				index.findBySubstring(query, matches);
+			}
+			ECNodeSet.retainRange(matches, from, to);
+		} else if (within == null) {
+			for (int i = Math.max(from, 1); i < to; i++) {
+				if (layout.descriptionMatches(i, query, exact)) ECNodeSet.set(matches, i);
+			}
+		} else {
+			for (int i = within.nextId(1); i >= 0; i = within.nextId(i + 1)) {
+				if (layout.descriptionMatches(i, query, exact)) ECNodeSet.set(matches, i);
+			}
+			return new ECNodeSet(this, layout, matches);
 		}
-		return matches;
+		ECNodeSet found = new ECNodeSet(this, layout, matches);
+		return within == null ? found : found.and(within);
+	}
+
+	/**
+	 * Returns a new set of counters, one per node of this tree, that can be
+	 * incremented from many threads and rolled up to ancestors.
+	 */
+	public ECCounter counter() {
+		return new ECCounter(freeze());
+	}
+
+	/**
+	 * Returns a resolver for mapping many EC number strings to nodes of this
+	 * tree, remembering the 4096 most recent distinct strings.
+	 */
+	public ECResolver resolver() {
+		return resolver(4096);
+	}
+
+	/**
+	 * Returns a resolver for mapping many EC number strings to nodes of this
+	 * tree, remembering about {@code cacheSize} recent distinct strings.
+	 */
+	public ECResolver resolver(int cacheSize) {
+		return new ECResolver(this, cacheSize);
+	}
+
+	/**
+	 * Returns the node with id {@code id}.
+	 * 
+	 * @see #getNodeId(ECNumber)
+	 */
+	public ECNode getNode(int id) {
+		return findByEcNumber(freeze().numberOf(getCheckedId(id)));
+	}
+
+	/**
+	 * Returns the id of the node with EC number {@code ecNumber}, or -1 if
+	 * there is none. Ids number the nodes {@link #inOrder() in-order} from 0
+	 * for the root, so the subtree of a node is a contiguous range of ids. Ids
+	 * are valid until this tree is next modified.
+	 */
+	public int getNodeId(ECNumber ecNumber) {
+		return freeze().getNodeId(ecNumber);
+	}
+
+	private int getNodeId(ECNode node) {
+		int id = getNodeId(node.getEcNumber());
+		if (id < 0) throw new IllegalArgumentException("Node " + node.getEcNumber() + " is not in this tree");
+		return id;
+	}
+
+	private int getCheckedId(int id) {
+		if (id < 0 || id >= size()) throw new IndexOutOfBoundsException("No node with id " + id);
+		return id;
+	}
+
+	/**
+	 * Returns true if {@code a} is a proper ancestor of {@code b}, in constant
+	 * time.
+	 */
+	public boolean isAncestor(ECNode a, ECNode b) {
+		return isAncestor(getNodeId(a), getNodeId(b));
+	}
+
+	/**
+	 * Returns true if the node with id {@code a} is a proper ancestor of the
+	 * node with id {@code b}, in constant time.
+	 * 
+	 * @see #getNodeId(ECNumber)
+	 */
+	public boolean isAncestor(int a, int b) {
+		return freeze().isAncestor(a, b);
+	}
+
+	/**
+	 * Returns the deepest node that is {@code a} or an ancestor of it, and
+	 * also {@code b} or an ancestor of it. The first call builds an index in
+	 * O(n log n); later calls take constant time.
+	 */
+	public ECNode lowestCommonAncestor(ECNode a, ECNode b) {
+		return getNode(lowestCommonAncestor(getNodeId(a), getNodeId(b)));
+	}
+
+	/**
+	 * Returns the id of the lowest common ancestor of the nodes with ids
+	 * {@code a} and {@code b}.
+	 * 
+	 * @see #lowestCommonAncestor(ECNode, ECNode)
+	 */
+	public int lowestCommonAncestor(int a, int b) {
+		return freeze().lowestCommonAncestor(a, b);
+	}
+
+	/**
+	 * Sets {@code result[i]} to the id of the lowest common ancestor of the
+	 * nodes with ids {@code a[i]} and {@code b[i]}.
+	 * 
+	 * @see #lowestCommonAncestor(ECNode, ECNode)
+	 */
+	public void lowestCommonAncestors(int[] a, int[] b, int[] result) {
+		freeze().lowestCommonAncestors(a, b, result);
+	}
+
+	/**
+	 * Returns every node of depth {@code depth}, in-order. The sets for all
+	 * depths are built together from a level index on first use and then
+	 * returned as they are until this tree is next modified, when the next
+	 * call {@link #freeze() freezes} it again in linear time.
+	 * 
+	 * @return An unmodifiable set; in earlier releases this was a new TreeSet
+	 *         (see {@link ECNodeSet})
+	 */
+	public ECNodeSet findNodesOfDepth(int depth) {
+		FrozenECTree layout = freeze();
+		if (depth < 0 || depth > ECNumber.MAX_DEPTH) return new ECNodeSet(this, layout, ECNodeSet.words(layout));
+		LevelViews views = levelViews;
+		if (views == null || views.layout != layout) levelViews = views = new LevelViews(this, layout);
+		return views.views[depth];
+	}
+
+	/**
+	 * The sets returned by {@link #findNodesOfDepth(int)}. The fields are
+	 * final so that threads sharing a FrozenECTree see them complete.
+	 */
+	private static final class LevelViews {
+		final FrozenECTree layout;
+		final ECNodeSet[] views;
+
+		LevelViews(ECTree tree, FrozenECTree layout) {
+			this.layout = layout;
+			views = new ECNodeSet[ECNumber.MAX_DEPTH + 1];
+			for (int d = 0; d <= ECNumber.MAX_DEPTH; d++)
+				views[d] = ECNodeSet.of(tree, layout, layout.level(d));
+		}
+	}
+
+	/**
+	 * Returns a breadth-first iterator over the nodes of depth
+	 * {@code fromDepth} and deeper. Shallower levels are skipped without being
+	 * visited.
+	 */
+	public Iterator<ECNode> breadthFirst(final int fromDepth) {
+		return new Iterator<ECNode>() {
+			private int depth = Math.max(fromDepth, 0);
+			private Iterator<ECNode> level = findNodesOfDepth(depth).iterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!level.hasNext() && depth < ECNumber.MAX_DEPTH)
+					level = findNodesOfDepth(++depth).iterator();
+				return level.hasNext();
+			}
+
+			@Override
+			public ECNode next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				return level.next();
+			}
+		};
+	}
+
+	/**
+	 * Returns an immutable copy of this tree laid out in primitive arrays,
+	 * which is more compact and can be shared between threads. The copy is
+	 * cached until this tree is next modified.
+	 */
+	public FrozenECTree freeze() {
+		if (frozen == null || frozenModCount != modCount) {
+			frozen = new FrozenECTree(this);
+			frozenModCount = modCount;
+		}
+		return frozen;
+	}
+
+	/**
+	 * Builds a trigram index over lowercase descriptions, which
+	 * {@link #findByDescriptionSubstring(String)} and
+	 * {@link #findByExactDescription(String)} then use to narrow candidates.
+	 * The index costs memory roughly proportional to the total description
+	 * length. After nodes are added, it is rebuilt on the next query.
+	 */
+	public void indexDescriptions() {
+		indexingDescriptions = true;
+		getDescriptionIndex();
+	}
+
+	DescriptionIndex getDescriptionIndex() {
+		if (!indexingDescriptions) return null;
+		if (descriptionIndex == null || descriptionIndexModCount != modCount) {
+			descriptionIndex = new DescriptionIndex(this);
+			descriptionIndexModCount = modCount;
+		}
+		return descriptionIndex;
+	}
+
+	/**
+	 * Returns the number of distinct descriptions stored for this tree. Each
+	 * is stored once however many nodes share it, and {@code null} is not
+	 * stored.
+	 */
+	public int getDescriptionCount() {
+		return descriptions.size();
+	}
+
+	/**
+	 * Returns the number of bytes that the descriptions counted by
+	 * {@link #getDescriptionCount()} take as UTF-8.
+	 */
+	public long getDescriptionByteCount() {
+		return descriptions.byteSize();
+	}
+
+	/**
+	 * Returns the store that holds the descriptions of the nodes added to
+	 * this tree.
+	 */
+	DescriptionStore descriptionStore() {
+		return descriptions;
+	}
+
+	protected int getModCount() {
+		return modCount;
 	}
 
 	protected ECNode getRoot() {
 		return root;
 	}
 
+	/**
+	 * Returns the number of nodes in this tree, including the root.
+	 */
+	public int size() {
+		return index.size();
+	}
+
 	/**
 	 * Returns an in-order iterator over ECNodes in this tree. For example:
 	 * 
@@ -137,7 +623,7 @@ public class ECTree implements Iterable<ECNode> {
 	 * </pre>
 	 */
 	public Iterator<ECNode> inOrder() {
-		return root.inOrder();
+		return getRoot().inOrder();
 	}
 
 	/**
@@ -148,11 +634,46 @@ public class ECTree implements Iterable<ECNode> {
 		return inOrder();
 	}
 
+	/**
+	 * Returns a parallel {@link Stream} over the nodes of this tree,
+	 * {@link #inOrder() in-order}.
+	 */
+	public Stream<ECNode> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	/**
+	 * Returns a sized {@link Spliterator} over the nodes of this tree,
+	 * {@link #inOrder() in-order}, that splits on subtree boundaries. It fails
+	 * fast if this tree is modified.
+	 */
+	@Override
+	public Spliterator<ECNode> spliterator() {
+		return new NodeSpliterator(this, 0, size());
+	}
+
+	/**
+	 * Returns a spliterator over the subtree rooted at {@code node}, which must
+	 * belong to this tree.
+	 */
+	Spliterator<ECNode> spliterator(ECNode node) {
+		int id = getNodeId(node);
+		return new NodeSpliterator(this, id, freeze().end(id));
+	}
+
+	/**
+	 * Returns a sequential {@link Stream} over the nodes of this tree,
+	 * {@link #inOrder() in-order}.
+	 */
+	public Stream<ECNode> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
 	/**
 	 * Prints an {@link #inOrder() in-order} representation of this tree.
 	 */
 	public void print() {
-		root.print();
+		getRoot().print();
 	}
 
 }
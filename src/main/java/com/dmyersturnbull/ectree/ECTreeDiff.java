@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Finds the differences between two releases of an {@link ECTree} in one
+ * merged pass over both trees {@link ECTree#inOrder() in-order}, in time
+ * linear in their sizes.
+ * 
+ * Classes in both trees are {@link ECChange.Type#RENAMED renamed} if their
+ * descriptions differ. A class only in the old tree and a class only in the
+ * new tree are {@link ECChange.Type#MOVED moved} if they have the same depth
+ * and description and no other class of that depth has the description in
+ * either tree. Generic descriptions such as "With oxygen as acceptor." recur
+ * under many subclasses, so sharing one is no evidence of a move.
+ * 
+ * A first pass over each tree finds the descriptions that are unique at their
+ * depth, so memory grows with the number of distinct descriptions, not with
+ * the number of changes. Only a class whose move partner comes later in the
+ * merged order is held until the partner is reached; every other change is
+ * passed on as soon as it is found.
+ * 
+ * @author dmyersturnbull
+ */
+public class ECTreeDiff {
+
+	/**
+	 * Passes each difference between {@code oldTree} and {@code newTree} to
+	 * {@code consumer}, in the merged in-order order of the two trees. A move
+	 * is passed when the later of its two classes is reached.
+	 */
+	public static void diff(ECTree oldTree, ECTree newTree, Consumer<ECChange> consumer) {
+		Map<String, ECNumber> oldUnique = uniqueKeys(oldTree);
+		Map<String, ECNumber> newUnique = uniqueKeys(newTree);
+		// one-sided classes whose partner is still ahead, keyed by the partner
+		Map<ECNumber, ECNode> waiting = new HashMap<ECNumber, ECNode>();
+		Iterator<ECNode> oldNodes = oldTree.inOrder();
+		Iterator<ECNode> newNodes = newTree.inOrder();
+		ECNode o = next(oldNodes);
+		ECNode n = next(newNodes);
+		while (o != null || n != null) {
+			int c = o == null ? 1 : n == null ? -1 : o.compareTo(n);
+			if (c == 0) {
+				if (!equal(o.getDescription(), n.getDescription())) {
+					consumer.accept(new ECChange(ECChange.Type.RENAMED, o, n));
+				}
+				o = next(oldNodes);
+				n = next(newNodes);
+			} else if (c < 0) {
+				ECNumber partner = partner(o, oldUnique, newUnique, oldTree);
+				ECNode match = partner == null ? null : waiting.remove(o.getEcNumber());
+				if (match != null) {
+					consumer.accept(new ECChange(ECChange.Type.MOVED, o, match));
+				} else if (partner != null && partner.compareTo(o.getEcNumber()) > 0) {
+					waiting.put(partner, o);
+				} else {
+					consumer.accept(new ECChange(ECChange.Type.REMOVED, o, null));
+				}
+				o = next(oldNodes);
+			} else {
+				ECNumber partner = partner(n, newUnique, oldUnique, newTree);
+				ECNode match = partner == null ? null : waiting.remove(n.getEcNumber());
+				if (match != null) {
+					consumer.accept(new ECChange(ECChange.Type.MOVED, match, n));
+				} else if (partner != null && partner.compareTo(n.getEcNumber()) > 0) {
+					waiting.put(partner, n);
+				} else {
+					consumer.accept(new ECChange(ECChange.Type.ADDED, null, n));
+				}
+				n = next(newNodes);
+			}
+		}
+	}
+
+	/**
+	 * Returns the differences between {@code oldTree} and {@code newTree}.
+	 * 
+	 * @see #diff(ECTree, ECTree, Consumer)
+	 */
+	public static List<ECChange> diff(ECTree oldTree, ECTree newTree) {
+		List<ECChange> changes = new ArrayList<ECChange>();
+		diff(oldTree, newTree, changes::add);
+		return changes;
+	}
+
+	/**
+	 * Returns the number of the class that {@code node}, which is only in
+	 * {@code tree}, may have moved to or from: the only class in the other
+	 * tree with its depth and description, if {@code node} is also the only
+	 * one in {@code tree} and that class is not in {@code tree}. Otherwise
+	 * returns {@code null}.
+	 */
+	private static ECNumber partner(ECNode node, Map<String, ECNumber> own, Map<String, ECNumber> other,
+			ECTree tree) {
+		String key = key(node);
+		if (!node.getEcNumber().equals(own.get(key))) return null;
+		ECNumber partner = other.get(key);
+		if (partner == null || tree.findByEcNumber(partner) != null) return null;
+		return partner;
+	}
+
+	/**
+	 * Maps the depth and description of every class of {@code tree} to its
+	 * number, or to {@code null} if another class of that depth has the same
+	 * description.
+	 */
+	private static Map<String, ECNumber> uniqueKeys(ECTree tree) {
+		Map<String, ECNumber> unique = new HashMap<String, ECNumber>();
+		for (ECNode node : tree) {
+			if (node.isRoot()) continue;
+			String key = key(node);
+			unique.put(key, unique.containsKey(key) ? null : node.getEcNumber());
+		}
+		return unique;
+	}
+
+	private static String key(ECNode node) {
+		return node.getDepth() + ":" + node.getDescription();
+	}
+
+	private static ECNode next(Iterator<ECNode> iter) {
+		return iter.hasNext() ? iter.next() : null;
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+}
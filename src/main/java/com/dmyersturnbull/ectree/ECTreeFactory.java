@@ -14,26 +14,40 @@
  */
 package com.dmyersturnbull.ectree;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 
 /**
  * A collection of factory methods for {@link ECTree ECTrees}. Contains methods
  * for creating ECTrees from text files provided by the ENZYME nomenclature
  * database at the <a href="http://www.isb-sib.ch/">Swiss Institute of
  * Bioinformatics (SIB)</a>. An example of the file can be found at <a
- * href="ftp://ftp.expasy.org/databases/enzyme/enzclass.txt">expasy</a>.
+ * href="ftp://ftp.expasy.org/databases/enzyme/enzclass.txt">expasy</a>. Files
+ * and URLs are read as UTF-8.
+ * 
+ * Trees can also be saved as binary snapshots, which load by memory-mapping
+ * instead of parsing. See {@link #fromSibFileCached(File, File)}. Snapshots
+ * are replaced by renaming a new file over them, never rewritten in place, so
+ * trees already loaded from one are not affected.
  * 
  * @author dmyersturnbull
  */
@@ -44,7 +58,8 @@ public class ECTreeFactory {
 	private static String REGEX = "^(\\d+)(?:\\.\\s*)?(\\d+)?(?:\\.\\s*)?(\\d+)?(?:[\\s\\.-]*)(?<desc>[A-Za-z]+.*)$";
 
 	public static ECTree fromRemoteSibFile(URL url) throws IOException {
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(url.openStream()))) {
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(url.openStream(),
+				StandardCharsets.UTF_8))) {
 			return fromSibFile(br);
 		}
 	}
@@ -57,41 +72,49 @@ public class ECTreeFactory {
 	 * href="ftp://ftp.expasy.org/databases/enzyme/enzclass.txt">expasy</a>.
 	 */
 	public static ECTree fromSibFile(BufferedReader br) throws IOException {
+		TreeBuilder builder = new TreeBuilder();
+		parseSibFile(br, builder);
+		return builder.build();
+	}
+
+	/**
+	 * Parses a text file like those used by {@link #fromSibFile(BufferedReader)}
+	 * , passing each class to {@code handler} as it is read instead of
+	 * building a tree. Memory use does not depend on the size of the file.
+	 */
+	public static void parseSibFile(BufferedReader br, ECClassHandler handler) throws IOException {
 		Pattern pattern = Pattern.compile(REGEX);
-		ECTree tree = new ECTree();
+		int[] codes = new int[3];
 		String line = "";
-		Comparator<ECNode> comp = new Comparator<ECNode>() {
-			@Override
-			public int compare(ECNode o1, ECNode o2) {
-				if (o1.getDepth() < o2.getDepth()) return -1;
-				if (o1.getDepth() > o2.getDepth()) return 1;
-				return o1.compareTo(o2);
-			}
-		};
-		SortedSet<ECNode> sorted = new TreeSet<ECNode>(comp);
 		while ((line = br.readLine()) != null) {
 			Matcher matcher = pattern.matcher(line);
 			if (matcher.find()) {
-				List<Integer> codeList = new ArrayList<Integer>(4);
+				int depth = 0;
 				// group indices start at 1, and we don't want the last one
 				for (int i = 1; i < matcher.groupCount(); i++) {
-					if (matcher.group(i) == null) break;
-					int code = Integer.parseInt(matcher.group(i));
-					codeList.add(code);
+					if (matcher.start(i) < 0) break;
+					int code = 0;
+					for (int j = matcher.start(i); j < matcher.end(i); j++) {
+						// stop accumulating once out of range, so a long run cannot overflow
+						if (code <= ECNumber.MAX_CODE) code = 10 * code + line.charAt(j) - '0';
+					}
+					if (code > ECNumber.MAX_CODE) {
+						throw new IllegalArgumentException("EC code " + matcher.group(i) + " is out of range");
+					}
+					codes[depth++] = code;
 				}
-				int[] codes = new int[codeList.size()];
-				for (int i = 0; i < codeList.size(); i++)
-					codes[i] = codeList.get(i);
-				String description = matcher.group("desc");
-				ECNumber number = new ECNumber(codes);
-				ECNode node = new ECNode(number, description);
-				sorted.add(node);
+				handler.onClass(ECNumber.valueOf(codes, depth), matcher.group("desc"));
 			}
 		}
-		for (ECNode node : sorted) {
-			tree.addFast(node);
-		}
-		return tree;
+	}
+
+	/**
+	 * Parses an SIB text file like {@link #parseSibFile(BufferedReader, ECClassHandler)}
+	 * , but scans the bytes of the memory-mapped file as in
+	 * {@link #fromSibFileMapped(File)}.
+	 */
+	public static void parseSibFileMapped(File file, ECClassHandler handler) throws IOException {
+		new SibFileScanner(map(file)).scan(handler);
 	}
 
 	/**
@@ -102,11 +125,197 @@ public class ECTreeFactory {
 	 * href="ftp://ftp.expasy.org/databases/enzyme/enzclass.txt">expasy</a>.
 	 */
 	public static ECTree fromSibFile(File file) throws IOException {
-		try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+		try (BufferedReader br = reader(file)) {
 			return fromSibFile(br);
 		}
 	}
 
+	/**
+	 * Adds the fully classified enzymes in an ENZYME {@code enzyme.dat} file
+	 * to {@code tree} as {@link EnzymeNode EnzymeNodes}, each under the class
+	 * with its parent number. Enzymes whose class is not in {@code tree} are
+	 * skipped. The file is read in one streaming pass. An
+	 * example of the format can be found at <a
+	 * href="ftp://ftp.expasy.org/databases/enzyme/enzyme.dat">expasy</a>.
+	 * 
+	 * @param fields
+	 *            The optional fields to keep; others are skipped while
+	 *            reading. Cross-references in particular account for most of
+	 *            the file.
+	 * @return The number of enzymes added
+	 */
+	public static int addEnzymeDat(ECTree tree, BufferedReader br, Set<EnzymeNode.Field> fields)
+			throws IOException {
+		return new EnzymeDatParser(fields).parse(br, tree);
+	}
+
+	/**
+	 * Creates a new {@link ECTree} from an {@code enzclass.txt} file, then
+	 * adds the enzymes in an {@code enzyme.dat} file as described in
+	 * {@link #addEnzymeDat(ECTree, BufferedReader, Set)}.
+	 */
+	public static ECTree fromSibFileAndEnzymeDat(File sibFile, File enzymeDat, Set<EnzymeNode.Field> fields)
+			throws IOException {
+		ECTree tree = fromSibFile(sibFile);
+		try (BufferedReader br = reader(enzymeDat)) {
+			addEnzymeDat(tree, br, fields);
+		}
+		return tree;
+	}
+
+	/**
+	 * Returns the CRC-32 checksum of the contents of {@code file}, as recorded
+	 * in snapshots built from it.
+	 */
+	public static long checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[8192];
+		try (InputStream in = new FileInputStream(file)) {
+			int n;
+			while ((n = in.read(buffer)) > 0)
+				crc.update(buffer, 0, n);
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Returns a tree for the SIB file {@code source}, loading it from the
+	 * snapshot {@code snapshot} if that was built from the current contents of
+	 * {@code source}. Otherwise, parses {@code source} and replaces the
+	 * snapshot.
+	 * 
+	 * @see #fromSnapshot(File, File)
+	 */
+	public static FrozenECTree fromSibFileCached(File source, File snapshot) throws IOException {
+		if (snapshot.isFile()) {
+			try {
+				return fromSnapshot(snapshot, source);
+			} catch (IOException e) {
+				// stale or unreadable; rebuild below
+			}
+		}
+		// stamp and checksum before parsing, so that a change during parsing
+		// makes the snapshot look stale rather than current
+		FrozenECTree.SnapshotSource stamp = stamp(source, checksum(source));
+		FrozenECTree tree = fromSibFile(source).freeze();
+		writeSnapshot(tree, snapshot, stamp);
+		return tree;
+	}
+
+	/**
+	 * Loads a snapshot written by {@link #writeSnapshot(ECTree, File, long)}
+	 * by memory-mapping it. Descriptions are decoded from the mapping when
+	 * requested. The layout is checked in one pass, so a corrupt snapshot is
+	 * rejected here instead of answering queries wrongly.
+	 * 
+	 * @throws IOException
+	 *             If the file is not a valid snapshot of a supported version
+	 */
+	public static FrozenECTree fromSnapshot(File snapshot) throws IOException {
+		return FrozenECTree.readSnapshot(map(snapshot));
+	}
+
+	/**
+	 * Loads a snapshot like {@link #fromSnapshot(File)}, first checking that it
+	 * was built from the current contents of {@code source}. If the snapshot
+	 * recorded the length and modification time of {@code source} and neither
+	 * has changed, the source is not read. Otherwise, the whole source is read
+	 * to compare its {@link #checksum(File) checksum}, which costs about as
+	 * much as parsing it.
+	 * 
+	 * @throws IOException
+	 *             If the snapshot is stale or not a snapshot of a supported
+	 *             version
+	 */
+	public static FrozenECTree fromSnapshot(File snapshot, File source) throws IOException {
+		MappedByteBuffer buffer = map(snapshot);
+		FrozenECTree.SnapshotSource recorded = FrozenECTree.readSnapshotSource(buffer.duplicate());
+		boolean unchanged = recorded.length >= 0 && recorded.length == source.length()
+				&& recorded.lastModified == source.lastModified();
+		if (!unchanged && recorded.checksum != checksum(source)) {
+			throw new IOException("Snapshot " + snapshot + " does not match " + source);
+		}
+		return FrozenECTree.readSnapshot(buffer);
+	}
+
+	/**
+	 * Opens {@code file} as UTF-8, the charset {@link SibFileScanner} decodes
+	 * with, so that every parser reads the same descriptions.
+	 */
+	private static BufferedReader reader(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+	}
+
+	private static MappedByteBuffer map(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+	}
+
+	private static FrozenECTree.SnapshotSource stamp(File source, long checksum) {
+		return new FrozenECTree.SnapshotSource(checksum, source.length(), source.lastModified());
+	}
+
+	/**
+	 * Writes {@code tree} to {@code snapshot} in a compact versioned binary
+	 * format that {@link #fromSnapshot(File)} can memory-map.
+	 * 
+	 * @param sourceChecksum
+	 *            The {@link #checksum(File) checksum} of the text the tree was
+	 *            built from
+	 * @see #writeSnapshot(ECTree, File, File)
+	 */
+	public static void writeSnapshot(ECTree tree, File snapshot, long sourceChecksum) throws IOException {
+		writeSnapshot(tree, snapshot, new FrozenECTree.SnapshotSource(sourceChecksum, -1, -1));
+	}
+
+	/**
+	 * Writes {@code tree} to {@code snapshot} like
+	 * {@link #writeSnapshot(ECTree, File, long)}, recording the checksum,
+	 * length, and modification time of {@code source}, the text it was built
+	 * from. {@link #fromSnapshot(File, File)} then reads {@code source} only if
+	 * its length or modification time has changed.
+	 */
+	public static void writeSnapshot(ECTree tree, File snapshot, File source) throws IOException {
+		writeSnapshot(tree, snapshot, stamp(source, checksum(source)));
+	}
+
+	/**
+	 * Writes to a temporary file in the same directory and then renames it
+	 * over {@code snapshot}. An existing snapshot may be memory-mapped, here
+	 * or by another process, so it must be replaced rather than rewritten.
+	 */
+	private static void writeSnapshot(ECTree tree, File snapshot, FrozenECTree.SnapshotSource source)
+			throws IOException {
+		File directory = snapshot.getAbsoluteFile().getParentFile();
+		File temporary = File.createTempFile(snapshot.getName(), ".tmp", directory);
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+					temporary)))) {
+				tree.freeze().writeSnapshot(out, source);
+			}
+			try {
+				Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary.toPath());
+		}
+	}
+
+	/**
+	 * Creates a new {@link ECTree} from an SIB text file like
+	 * {@link #fromSibFile(File)}, but memory-maps the file and scans its bytes
+	 * directly instead of decoding lines and matching a regular expression.
+	 * The result is the same; only descriptions are decoded, as UTF-8.
+	 */
+	public static ECTree fromSibFileMapped(File file) throws IOException {
+		TreeBuilder builder = new TreeBuilder();
+		parseSibFileMapped(file, builder);
+		return builder.build();
+	}
+
 	/**
 	 * Creates a new {@link ECTree} from the text file in
 	 * {@code src/main/resources/enzclass_2013-07-24.txt}.
@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Holds {@link FrozenECTree FrozenECTrees} for several releases of the ENZYME
+ * nomenclature, keyed by release date, sharing as much between them as
+ * possible:
+ * <ul>
+ * <li>All releases share one {@link DescriptionStore store} of distinct
+ * descriptions, so a description that is unchanged between releases is stored
+ * once, as UTF-8. Known descriptions are found by hashing their bytes; no
+ * decoded copies are kept beyond the store's small cache.</li>
+ * <li>Releases with exactly the same EC numbers share their layout arrays, and
+ * releases with the same descriptions as well share the array that selects
+ * them from the store.</li>
+ * <li>{@link ECNumber ECNumbers} are already shared between all trees.</li>
+ * </ul>
+ * Layouts are shared only whole: a release that adds or removes even one
+ * class gets its own layout arrays, about 21 bytes per node including the
+ * description ids. Only the descriptions, which usually take more space, are
+ * shared between such releases.
+ * 
+ * Adding a release with new descriptions replaces the trees returned for every
+ * release with equal ones that use the store's larger arrays; trees returned
+ * earlier stay valid but keep the old arrays alive. Adding a release whose
+ * descriptions are all known already leaves the other trees as they are.
+ * Methods are synchronized.
+ * 
+ * @author dmyersturnbull
+ */
+public class ECTreeRegistry {
+
+	public static final LocalDate RELEASE_2013_07_24 = LocalDate.of(2013, 7, 24);
+
+	private final NavigableMap<LocalDate, Release> releases = new TreeMap<LocalDate, Release>();
+	private final DescriptionStore descriptions = new DescriptionStore();
+
+	/**
+	 * Adds the release of {@link ECTreeFactory#fromSibFile_2013_07_24()}.
+	 */
+	public synchronized FrozenECTree load_2013_07_24() throws IOException {
+		return put(RELEASE_2013_07_24, ECTreeFactory.fromSibFile_2013_07_24());
+	}
+
+	/**
+	 * Adds the release in the SIB text file {@code sibFile}, published on
+	 * {@code release}.
+	 * 
+	 * @see ECTreeFactory#fromSibFile(File)
+	 */
+	public synchronized FrozenECTree load(LocalDate release, File sibFile) throws IOException {
+		return put(release, ECTreeFactory.fromSibFile(sibFile));
+	}
+
+	/**
+	 * Adds {@code tree} as the release published on {@code release}, replacing
+	 * any existing tree for that date. {@code tree} is not retained.
+	 * 
+	 * @return A tree equal to {@code tree} that shares storage with the other
+	 *         releases
+	 */
+	public synchronized FrozenECTree put(LocalDate release, ECTree tree) {
+		if (release == null) throw new IllegalArgumentException("Release date is null");
+		FrozenECTree frozen = tree.freeze();
+		int known = descriptions.size();
+		int[] ids = new int[frozen.size()];
+		for (int i = 0; i < ids.length; i++) {
+			String description = frozen.descriptionOf(i);
+			// -1 selects null, which is kept apart from the empty string
+			ids[i] = description == null ? -1 : descriptions.intern(description);
+		}
+		FrozenECTree layout = frozen;
+		for (Release other : releases.values()) {
+			if (other.tree.hasSameLayout(frozen)) layout = other.tree;
+			if (Arrays.equals(other.descriptionIds, ids)) ids = other.descriptionIds;
+		}
+		if (descriptions.size() > known) {
+			for (Release other : releases.values())
+				other.tree = new FrozenECTree(other.tree, descriptions.select(other.descriptionIds));
+		}
+		Release entry = new Release(new FrozenECTree(layout, descriptions.select(ids)), ids);
+		releases.put(release, entry);
+		return entry.tree;
+	}
+
+	/**
+	 * Returns the number of distinct descriptions stored for all releases,
+	 * including removed ones.
+	 */
+	public synchronized int getDescriptionCount() {
+		return descriptions.size();
+	}
+
+	/**
+	 * Returns the tree for the release published on {@code release}, or
+	 * {@code null} if there is none.
+	 */
+	public synchronized FrozenECTree get(LocalDate release) {
+		Release entry = releases.get(release);
+		return entry == null ? null : entry.tree;
+	}
+
+	/**
+	 * Returns the tree for the latest release published on or before
+	 * {@code date}, or {@code null} if there is none.
+	 */
+	public synchronized FrozenECTree getAsOf(LocalDate date) {
+		Map.Entry<LocalDate, Release> entry = releases.floorEntry(date);
+		return entry == null ? null : entry.getValue().tree;
+	}
+
+	/**
+	 * Returns the tree for the latest release, or {@code null} if there are
+	 * none.
+	 */
+	public synchronized FrozenECTree getLatest() {
+		Map.Entry<LocalDate, Release> entry = releases.lastEntry();
+		return entry == null ? null : entry.getValue().tree;
+	}
+
+	/**
+	 * Returns the release dates, in order.
+	 */
+	public synchronized NavigableSet<LocalDate> getReleases() {
+		return Collections.unmodifiableNavigableSet(new TreeSet<LocalDate>(releases.keySet()));
+	}
+
+	/**
+	 * Removes the release published on {@code release}. Its descriptions stay
+	 * in the shared store.
+	 * 
+	 * @return True if there was such a release
+	 */
+	public synchronized boolean remove(LocalDate release) {
+		return releases.remove(release) != null;
+	}
+
+	private static final class Release {
+		FrozenECTree tree;
+		final int[] descriptionIds;
+
+		Release(FrozenECTree tree, int[] descriptionIds) {
+			this.tree = tree;
+			this.descriptionIds = descriptionIds;
+		}
+	}
+
+}
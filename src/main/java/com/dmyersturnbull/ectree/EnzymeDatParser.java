@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A streaming parser for the ENZYME {@code enzyme.dat} flat file. Each line is
+ * folded into the entry being read and then discarded, and an entry is added
+ * to the tree as soon as its "//" terminator is read, so memory use does not
+ * grow with the file. Fields that were not requested are skipped without
+ * being stored. Transferred and deleted entries are skipped, as are entries
+ * whose class is not in the tree, such as a class newer than the
+ * {@code enzclass.txt} release the tree was built from.
+ * 
+ * @author dmyersturnbull
+ */
+class EnzymeDatParser {
+
+	private final Set<EnzymeNode.Field> fields;
+
+	private ECNumber number;
+	private final StringBuilder description = new StringBuilder();
+	private List<String> alternateNames = new ArrayList<>();
+	private List<String> catalyticActivities = new ArrayList<>();
+	private final StringBuilder cofactors = new StringBuilder();
+	private final StringBuilder comments = new StringBuilder();
+	private List<String> uniProtAccessions = new ArrayList<>();
+	/** An AN or CA item that may continue onto the next line */
+	private final StringBuilder pending = new StringBuilder();
+	private List<String> pendingItems;
+
+	EnzymeDatParser(Set<EnzymeNode.Field> fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * Adds every active entry in {@code br} to {@code tree}, under the
+	 * existing class with the entry's parent number. Entries already in the
+	 * tree, and entries whose class is not in it, are left alone.
+	 * 
+	 * @return The number of entries added
+	 */
+	int parse(BufferedReader br, ECTree tree) throws IOException {
+		int added = 0;
+		String line = "";
+		while ((line = br.readLine()) != null) {
+			if (line.startsWith("//")) {
+				if (finish(tree)) added++;
+			} else if (line.length() > 2) {
+				String value = line.length() > 5 ? line.substring(5).trim() : "";
+				accept(line.charAt(0), line.charAt(1), value);
+			}
+		}
+		if (finish(tree)) added++;
+		return added;
+	}
+
+	private void accept(char c0, char c1, String value) {
+		if (c0 == 'I' && c1 == 'D') {
+			number = ECNumber.parse(value);
+		} else if (c0 == 'D' && c1 == 'E') {
+			join(description, value, " ");
+		} else if (c0 == 'A' && c1 == 'N') {
+			if (fields.contains(EnzymeNode.Field.ALTERNATE_NAMES)) appendItem(alternateNames, value);
+		} else if (c0 == 'C' && c1 == 'A') {
+			if (fields.contains(EnzymeNode.Field.CATALYTIC_ACTIVITY)) appendItem(catalyticActivities, value);
+		} else if (c0 == 'C' && c1 == 'F') {
+			if (fields.contains(EnzymeNode.Field.COFACTORS)) join(cofactors, value, " ");
+		} else if (c0 == 'C' && c1 == 'C') {
+			if (fields.contains(EnzymeNode.Field.COMMENTS)) {
+				if (value.startsWith("-!-")) {
+					join(comments, value.substring(3).trim(), "\n");
+				} else {
+					join(comments, value, " ");
+				}
+			}
+		} else if (c0 == 'D' && c1 == 'R') {
+			if (fields.contains(EnzymeNode.Field.CROSS_REFERENCES)) appendAccessions(value);
+		}
+	}
+
+	/**
+	 * Appends a line of an item that ends with a period, such as an
+	 * alternative name, which may continue onto following lines.
+	 */
+	private void appendItem(List<String> items, String value) {
+		if (items != pendingItems) flushItem();
+		pendingItems = items;
+		join(pending, value, " ");
+		if (value.endsWith(".")) flushItem();
+	}
+
+	private void flushItem() {
+		if (pending.length() > 0) {
+			pendingItems.add(pending.toString());
+			pending.setLength(0);
+		}
+	}
+
+	/**
+	 * Appends the accessions from a line such as
+	 * {@code P07327, ADH1A_HUMAN;  P28469, ADH1A_MACMU;}.
+	 */
+	private void appendAccessions(String value) {
+		int start = 0;
+		while (start < value.length()) {
+			int end = value.indexOf(';', start);
+			if (end < 0) end = value.length();
+			int comma = value.indexOf(',', start);
+			String accession = value.substring(start, comma >= 0 && comma < end ? comma : end).trim();
+			if (!accession.isEmpty()) uniProtAccessions.add(accession);
+			start = end + 1;
+		}
+	}
+
+	private static void join(StringBuilder sb, String value, String separator) {
+		if (sb.length() > 0) sb.append(separator);
+		sb.append(value);
+	}
+
+	/**
+	 * Adds the entry read so far, if any, and resets for the next one.
+	 * 
+	 * @return Whether an entry was added
+	 */
+	private boolean finish(ECTree tree) {
+		boolean added = false;
+		flushItem();
+		pendingItems = null;
+		String name = description.toString();
+		if (number != null && !name.startsWith("Transferred entry") && !name.startsWith("Deleted entry")
+				&& tree.findByEcNumber(number) == null && hasParent(tree, number)) {
+			tree.addFast(new EnzymeNode(number, name, alternateNames, catalyticActivities, emptyToNull(cofactors),
+					emptyToNull(comments), uniProtAccessions));
+			alternateNames = new ArrayList<>();
+			catalyticActivities = new ArrayList<>();
+			uniProtAccessions = new ArrayList<>();
+			added = true;
+		} else {
+			alternateNames.clear();
+			catalyticActivities.clear();
+			uniProtAccessions.clear();
+		}
+		number = null;
+		description.setLength(0);
+		cofactors.setLength(0);
+		comments.setLength(0);
+		return added;
+	}
+
+	/**
+	 * Returns true if {@code tree} has the class that an entry numbered
+	 * {@code number} belongs under. {@link ECTree#addFast(ECNode)} would
+	 * otherwise attach it to the root.
+	 */
+	private static boolean hasParent(ECTree tree, ECNumber number) {
+		return number.getDepth() > 1 && tree.findByEcNumber(number.getParentNumber()) != null;
+	}
+
+	private static String emptyToNull(StringBuilder sb) {
+		return sb.length() == 0 ? null : sb.toString();
+	}
+
+}
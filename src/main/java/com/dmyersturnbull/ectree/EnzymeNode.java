@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A leaf {@link ECNode} for a fully classified enzyme, such as 1.1.1.1, read
+ * from an ENZYME {@code enzyme.dat} file. Its {@link #getDescription()
+ * description} is the accepted name. Other fields are kept only if requested
+ * when parsing (see {@link Field}); fields that were not kept are empty.
+ * 
+ * @author dmyersturnbull
+ */
+public class EnzymeNode extends ECNode {
+
+	/**
+	 * Optional fields of an {@code enzyme.dat} entry.
+	 */
+	public enum Field {
+		/** AN lines: alternative names */
+		ALTERNATE_NAMES,
+		/** CA lines: catalytic activities */
+		CATALYTIC_ACTIVITY,
+		/** CF lines: cofactors */
+		COFACTORS,
+		/** CC lines: free-text comments */
+		COMMENTS,
+		/** DR lines: UniProtKB/Swiss-Prot accessions; usually the largest */
+		CROSS_REFERENCES
+	}
+
+	private final List<String> alternateNames;
+	private final List<String> catalyticActivities;
+	private final String cofactors;
+	private final String comments;
+	private final List<String> uniProtAccessions;
+
+	public EnzymeNode(ECNumber ecNumber, String description, List<String> alternateNames,
+			List<String> catalyticActivities, String cofactors, String comments, List<String> uniProtAccessions) {
+		super(ecNumber, description);
+		this.alternateNames = Collections.unmodifiableList(alternateNames);
+		this.catalyticActivities = Collections.unmodifiableList(catalyticActivities);
+		this.cofactors = cofactors;
+		this.comments = comments;
+		this.uniProtAccessions = Collections.unmodifiableList(uniProtAccessions);
+	}
+
+	public List<String> getAlternateNames() {
+		return alternateNames;
+	}
+
+	/**
+	 * Returns the catalyzed reactions, such as:
+	 * 
+	 * <pre>
+	 * (1) A primary alcohol + NAD(+) = an aldehyde + NADH.
+	 * </pre>
+	 */
+	public List<String> getCatalyticActivities() {
+		return catalyticActivities;
+	}
+
+	/**
+	 * Returns the cofactors, or {@code null} if there are none or they were
+	 * not kept.
+	 */
+	public String getCofactors() {
+		return cofactors;
+	}
+
+	/**
+	 * Returns the comments joined into one string, or {@code null} if there
+	 * are none or they were not kept.
+	 */
+	public String getComments() {
+		return comments;
+	}
+
+	/**
+	 * Returns the UniProtKB/Swiss-Prot accessions of proteins with this
+	 * activity, such as "P07327".
+	 */
+	public List<String> getUniProtAccessions() {
+		return uniProtAccessions;
+	}
+
+}
@@ -0,0 +1,657 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable {@link ECTree} laid out {@link #inOrder() in-order} in parallel
+ * primitive arrays. Node {@code i} is the {@code i}th node of an in-order
+ * traversal, so the root is node 0 and the subtree of node {@code i} is the
+ * range from {@code i} up to its subtree end. Descriptions are kept as UTF-8
+ * in a single byte array, which is shared with the
+ * {@link DescriptionStore store} of the tree it was frozen from.
+ * 
+ * ECNodes returned by this tree are lightweight views created on demand. They
+ * cannot be modified, and their {@link ECNode#getChildren() children} are an
+ * unmodifiable view. A FrozenECTree can be shared between threads without locking.
+ * 
+ * Create one with {@link ECTree#freeze()}, or load one from a binary snapshot
+ * with {@link ECTreeFactory#fromSnapshot(java.io.File)}.
+ * 
+ * @author dmyersturnbull
+ */
+public final class FrozenECTree extends ECTree {
+
+	/**
+	 * "ECTS" in ASCII.
+	 */
+	private static final int SNAPSHOT_MAGIC = 0x45435453;
+	private static final int SNAPSHOT_VERSION = 2;
+	private static final int SNAPSHOT_HEADER_BYTES = 32;
+
+	/**
+	 * Packed {@link ECNumber#toLong() EC numbers}; sorted because the layout
+	 * is in-order. The root's is 0.
+	 */
+	private final long[] codes;
+	private final int[] parents;
+	private final int[] ends;
+	private final byte[] depths;
+	private final StringPool descriptions;
+
+	private volatile DescriptionIndex descriptionIndex;
+	private volatile AncestorIndex ancestorIndex;
+	private volatile TextIndex textIndex;
+	private volatile int[][] levels;
+
+	FrozenECTree(ECTree tree) {
+		super(null);
+		int n = tree.size();
+		codes = new long[n];
+		parents = new int[n];
+		ends = new int[n];
+		depths = new byte[n];
+		DescriptionStore store = tree.descriptionStore();
+		int[] ids = new int[n];
+		// in-order, the parent of each node is the nearest node still open
+		int[] open = new int[ECNumber.MAX_DEPTH + 1];
+		ECNode[] openNodes = new ECNode[ECNumber.MAX_DEPTH + 1];
+		int top = -1;
+		int i = 0;
+		for (ECNode node : tree) {
+			while (top >= 0 && openNodes[top] != node.getParent()) {
+				ends[open[top--]] = i;
+			}
+			codes[i] = node.isRoot() ? 0 : node.getEcNumber().toLong();
+			parents[i] = top < 0 ? -1 : open[top];
+			depths[i] = (byte) node.getDepth();
+			// -1 for a null description, which the view keeps as null
+			ids[i] = node.getDescriptionId();
+			open[++top] = i;
+			openNodes[top] = node;
+			i++;
+		}
+		while (top >= 0)
+			ends[open[top--]] = i;
+		descriptions = store.select(ids);
+	}
+
+	private FrozenECTree(long[] codes, int[] parents, int[] ends, byte[] depths, StringPool descriptions) {
+		super(null);
+		this.codes = codes;
+		this.parents = parents;
+		this.ends = ends;
+		this.depths = depths;
+		this.descriptions = descriptions;
+	}
+
+	/**
+	 * Creates a tree with the layout of {@code layout} and different
+	 * descriptions. The layout arrays are shared, not copied.
+	 */
+	FrozenECTree(FrozenECTree layout, StringPool descriptions) {
+		this(layout.codes, layout.parents, layout.ends, layout.depths, descriptions);
+		if (descriptions.size() != codes.length) {
+			throw new IllegalArgumentException("Need " + codes.length + " descriptions, not " + descriptions.size());
+		}
+	}
+
+	/**
+	 * Returns true if {@code other} has the same nodes in the same places,
+	 * ignoring descriptions.
+	 */
+	boolean hasSameLayout(FrozenECTree other) {
+		return codes == other.codes || Arrays.equals(codes, other.codes);
+	}
+
+	/**
+	 * Reads a snapshot written by
+	 * {@link #writeSnapshot(DataOutputStream, SnapshotSource)}. The layout
+	 * arrays are copied out of {@code buffer} in bulk; the descriptions stay
+	 * in it and are decoded when requested.
+	 * 
+	 * @throws IOException
+	 *             If {@code buffer} does not hold a snapshot of this version
+	 */
+	static FrozenECTree readSnapshot(ByteBuffer buffer) throws IOException {
+		readSnapshotSource(buffer);
+		try {
+			return readSnapshotBody(buffer);
+		} catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Truncated ECTree snapshot", e);
+		}
+	}
+
+	private static FrozenECTree readSnapshotBody(ByteBuffer buffer) throws IOException {
+		int n = buffer.getInt();
+		// each node takes 17 bytes; check before allocating for a corrupt count
+		if (n < 1 || n > buffer.remaining() / 17) throw new IOException("Bad node count " + n + " in ECTree snapshot");
+		long[] codes = new long[n];
+		int[] parents = new int[n];
+		int[] ends = new int[n];
+		byte[] depths = new byte[n];
+		buffer.asLongBuffer().get(codes);
+		buffer.position(buffer.position() + 8 * n);
+		buffer.asIntBuffer().get(parents);
+		buffer.position(buffer.position() + 4 * n);
+		buffer.asIntBuffer().get(ends);
+		buffer.position(buffer.position() + 4 * n);
+		buffer.get(depths);
+		checkLayout(codes, parents, ends, depths);
+		StringPool descriptions = StringPool.read(buffer);
+		if (descriptions.size() != n) throw new IOException("Wrong number of descriptions in ECTree snapshot");
+		return new FrozenECTree(codes, parents, ends, depths, descriptions);
+	}
+
+	/**
+	 * Checks in one pass that the arrays describe an in-order layout: numbers
+	 * valid and sorted, each parent the nearest open node with the parent
+	 * number, depths one more than the parent's, and subtree ranges nested. A
+	 * corrupt snapshot then fails here rather than answering queries wrongly.
+	 * 
+	 * @throws IOException
+	 *             If the layout is inconsistent
+	 */
+	private static void checkLayout(long[] codes, int[] parents, int[] ends, byte[] depths) throws IOException {
+		int n = codes.length;
+		if (codes[0] != 0 || parents[0] != -1 || depths[0] != 0 || ends[0] != n) {
+			throw new IOException("Bad root in ECTree snapshot");
+		}
+		int[] open = new int[ECNumber.MAX_DEPTH + 1];
+		int top = 0;
+		for (int i = 1; i < n; i++) {
+			while (ends[open[top]] == i)
+				top--;
+			int parent = open[top];
+			int depth = depths[i];
+			long code = codes[i];
+			if (parents[i] != parent || depth != depths[parent] + 1 || depth > ECNumber.MAX_DEPTH
+					|| code <= codes[i - 1] || !ECNumber.isValid(code) || ECNumber.depthOf(code) != depth
+					|| ECNumber.parentOf(code) != codes[parent] || ends[i] <= i || ends[i] > ends[parent]) {
+				throw new IOException("Bad node " + i + " in ECTree snapshot");
+			}
+			open[++top] = i;
+		}
+		while (top > 0) {
+			if (ends[open[top--]] != n) throw new IOException("Bad subtree end in ECTree snapshot");
+		}
+	}
+
+	/**
+	 * Reads the header of a snapshot from the current position of
+	 * {@code buffer}, advancing past it, and returns what it records of the
+	 * source text the snapshot was built from.
+	 * 
+	 * @throws IOException
+	 *             If {@code buffer} does not hold a snapshot of this version
+	 */
+	static SnapshotSource readSnapshotSource(ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < SNAPSHOT_HEADER_BYTES || buffer.getInt() != SNAPSHOT_MAGIC) {
+			throw new IOException("Not an ECTree snapshot");
+		}
+		int version = buffer.getInt();
+		if (version != SNAPSHOT_VERSION) {
+			throw new IOException("Unsupported ECTree snapshot version " + version);
+		}
+		return new SnapshotSource(buffer.getLong(), buffer.getLong(), buffer.getLong());
+	}
+
+	/**
+	 * Writes this tree as a snapshot: a header with the checksum, length, and
+	 * modification time of the source, the node count, the packed numbers,
+	 * parents, subtree ends, depths, and the description pool. Numbers are
+	 * big-endian.
+	 */
+	void writeSnapshot(DataOutputStream out, SnapshotSource source) throws IOException {
+		out.writeInt(SNAPSHOT_MAGIC);
+		out.writeInt(SNAPSHOT_VERSION);
+		out.writeLong(source.checksum);
+		out.writeLong(source.length);
+		out.writeLong(source.lastModified);
+		out.writeInt(codes.length);
+		for (long code : codes)
+			out.writeLong(code);
+		for (int parent : parents)
+			out.writeInt(parent);
+		for (int end : ends)
+			out.writeInt(end);
+		out.write(depths);
+		descriptions.write(out);
+	}
+
+	/**
+	 * What a snapshot records of the text it was built from. The length and
+	 * modification time let a loader skip reading the source when neither has
+	 * changed; they are -1 when unknown.
+	 */
+	static final class SnapshotSource {
+		final long checksum;
+		final long length;
+		final long lastModified;
+
+		SnapshotSource(long checksum, long length, long lastModified) {
+			this.checksum = checksum;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+	}
+
+	/**
+	 * Unsupported; FrozenECTrees are immutable.
+	 */
+	@Override
+	public void add(ECNode node) {
+		throw new UnsupportedOperationException("FrozenECTrees are immutable");
+	}
+
+	/**
+	 * Unsupported; FrozenECTrees are immutable.
+	 */
+	@Override
+	protected void addFast(ECNode node) {
+		throw new UnsupportedOperationException("FrozenECTrees are immutable");
+	}
+
+	/**
+	 * Searches this tree for the unique ECNode with EC number {@code ecNumber}
+	 * by binary search over the packed numbers.
+	 */
+	@Override
+	public ECNode findByEcNumber(ECNumber ecNumber) {
+		int id = indexOf(ecNumber);
+		return id < 0 ? null : node(id);
+	}
+
+	@Override
+	DescriptionIndex getDescriptionIndex() {
+		return descriptionIndex;
+	}
+
+	/**
+	 * Returns true if the description of node {@code id} contains
+	 * {@code query}, or equals it if {@code exact}, ignoring case.
+	 */
+	boolean descriptionMatches(int id, String query, boolean exact) {
+		return exact ? descriptions.equalsIgnoreCase(id, query) : descriptions.containsIgnoreCase(id, query);
+	}
+
+	@Override
+	public List<ECNode> findBySimilarDescription(String description, int maxDistance, int limit) {
+		checkSimilarityArguments(maxDistance, limit);
+		DescriptionIndex index = descriptionIndex;
+		if (index == null) return DescriptionIndex.scanSimilar(this, description, maxDistance, limit);
+		return index.findSimilar(description, maxDistance, limit);
+	}
+
+	@Override
+	public ECNode getNode(int id) {
+		checkId(id);
+		return node(id);
+	}
+
+	@Override
+	public int getNodeId(ECNumber ecNumber) {
+		int id = indexOf(ecNumber);
+		return id < 0 ? -1 : id;
+	}
+
+	@Override
+	public boolean isAncestor(int a, int b) {
+		checkId(a);
+		checkId(b);
+		return a < b && b < ends[a];
+	}
+
+	@Override
+	public int lowestCommonAncestor(int a, int b) {
+		checkId(a);
+		checkId(b);
+		return getAncestorIndex().lowestCommonAncestor(a, b);
+	}
+
+	@Override
+	public void lowestCommonAncestors(int[] a, int[] b, int[] result) {
+		if (a.length != b.length || result.length < a.length) {
+			throw new IllegalArgumentException("Arrays of lengths " + a.length + ", " + b.length + ", and "
+					+ result.length + " do not match");
+		}
+		AncestorIndex index = getAncestorIndex();
+		for (int i = 0; i < a.length; i++) {
+			checkId(a[i]);
+			checkId(b[i]);
+			result[i] = index.lowestCommonAncestor(a[i], b[i]);
+		}
+	}
+
+	private AncestorIndex getAncestorIndex() {
+		AncestorIndex index = ancestorIndex;
+		if (index == null) {
+			// racing threads may each build one; all are equivalent
+			index = new AncestorIndex(parents, ends, depths);
+			ancestorIndex = index;
+		}
+		return index;
+	}
+
+	private void checkId(int id) {
+		if (id < 0 || id >= codes.length) throw new IndexOutOfBoundsException("No node with id " + id);
+	}
+
+	/**
+	 * Returns this tree.
+	 */
+	@Override
+	public FrozenECTree freeze() {
+		return this;
+	}
+
+	@Override
+	protected ECNode getRoot() {
+		return node(0);
+	}
+
+	/**
+	 * Builds the description index. Unlike on a mutable ECTree, this is safe
+	 * to call while other threads query.
+	 */
+	@Override
+	public synchronized void indexDescriptions() {
+		if (descriptionIndex == null) descriptionIndex = new DescriptionIndex(this);
+	}
+
+	/**
+	 * Counts the distinct descriptions this tree selects from the store of
+	 * the tree it was frozen from, or every description read from a snapshot.
+	 */
+	@Override
+	public int getDescriptionCount() {
+		return descriptions.storedSize();
+	}
+
+	@Override
+	public long getDescriptionByteCount() {
+		return descriptions.storedByteSize();
+	}
+
+	@Override
+	public int size() {
+		return codes.length;
+	}
+
+	/**
+	 * Returns the exclusive end of the id range of the subtree of node
+	 * {@code id}.
+	 */
+	int end(int id) {
+		return ends[id];
+	}
+
+	/**
+	 * Returns the packed EC number of the node with id {@code id}; 0 for the
+	 * root.
+	 */
+	long code(int id) {
+		return codes[id];
+	}
+
+	/**
+	 * Returns the id of the parent of the node with id {@code id}, or -1 for
+	 * the root.
+	 */
+	int parent(int id) {
+		return parents[id];
+	}
+
+	/**
+	 * Returns the EC number of the node with id {@code id}.
+	 */
+	ECNumber numberOf(int id) {
+		return id == 0 ? null : ECNumber.fromLong(codes[id]);
+	}
+
+	/**
+	 * Returns the description of the node with id {@code id}.
+	 */
+	String descriptionOf(int id) {
+		return id == 0 ? null : descriptions.get(id);
+	}
+
+	/**
+	 * Returns the id of the node with EC number {@code ecNumber}, or a
+	 * negative number if there is none.
+	 */
+	int indexOf(ECNumber ecNumber) {
+		return indexOf(ecNumber == null ? 0 : ecNumber.toLong());
+	}
+
+	/**
+	 * Returns the id of the node whose EC number has the
+	 * {@link ECNumber#toLong() packed representation} {@code packed}, or a
+	 * negative number if there is none.
+	 */
+	int indexOf(long packed) {
+		return Arrays.binarySearch(codes, packed);
+	}
+
+	/**
+	 * Returns the ids of the nodes of depth {@code depth} in increasing
+	 * order. The arrays for every depth are built together on first use.
+	 */
+	int[] level(int depth) {
+		int[][] index = levels;
+		if (index == null) {
+			int[] counts = new int[ECNumber.MAX_DEPTH + 1];
+			for (byte d : depths)
+				counts[d]++;
+			index = new int[ECNumber.MAX_DEPTH + 1][];
+			for (int d = 0; d <= ECNumber.MAX_DEPTH; d++)
+				index[d] = new int[counts[d]];
+			int[] filled = new int[ECNumber.MAX_DEPTH + 1];
+			for (int i = 0; i < depths.length; i++)
+				index[depths[i]][filled[depths[i]]++] = i;
+			levels = index;
+		}
+		return index[depth];
+	}
+
+	/**
+	 * Returns the word index for {@link #searchDescriptions(String, int)},
+	 * building it on first use.
+	 */
+	TextIndex textIndex() {
+		TextIndex index = textIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = textIndex;
+				if (index == null) textIndex = index = new TextIndex(this);
+			}
+		}
+		return index;
+	}
+
+	ECNode node(int id) {
+		return new FrozenECNode(this, id);
+	}
+
+	/**
+	 * A view of one node of a FrozenECTree.
+	 */
+	private static final class FrozenECNode extends ECNode {
+
+		private final FrozenECTree tree;
+		private final int id;
+
+		FrozenECNode(FrozenECTree tree, int id) {
+			super(tree.numberOf(id), null, null);
+			this.tree = tree;
+			this.id = id;
+			super.setTree(tree);
+		}
+
+		@Override
+		protected boolean addChild(ECNode e) {
+			throw new UnsupportedOperationException("FrozenECTrees are immutable");
+		}
+
+		@Override
+		public Iterator<ECNode> breadthFirst() {
+			return new NodeIterator(tree) {
+				private int depth = tree.depths[id];
+				private int next = id;
+				private final int end = tree.ends[id];
+
+				@Override
+				public boolean hasNext() {
+					return next < end;
+				}
+
+				@Override
+				int nextId() {
+					int current = next;
+					// each level, read left to right in-order, is one level of the BFS
+					do {
+						next++;
+						if (next == end && depth < ECNumber.MAX_DEPTH) {
+							depth++;
+							next = id;
+						}
+					} while (next < end && tree.depths[next] != depth);
+					return current;
+				}
+			};
+		}
+
+		@Override
+		public Iterator<ECNode> depthFirst() {
+			return new NodeIterator(tree) {
+				private final int[] stack = new int[ECNumber.MAX_DEPTH + 1];
+				private int top = -1;
+				private int cursor = id;
+				private final int end = tree.ends[id];
+
+				@Override
+				public boolean hasNext() {
+					return top >= 0 || cursor < end;
+				}
+
+				@Override
+				int nextId() {
+					while (true) {
+						if (top >= 0 && tree.ends[stack[top]] <= cursor) return stack[top--];
+						int entered = cursor++;
+						if (tree.ends[entered] == cursor) return entered;
+						stack[++top] = entered;
+					}
+				}
+			};
+		}
+
+		@Override
+		public ECNode findByEcNumber(ECNumber ecNumber) {
+			int found = tree.indexOf(ecNumber);
+			return found >= id && found < tree.ends[id] ? tree.node(found) : null;
+		}
+
+		/**
+		 * Returns an unmodifiable view of the children of this node, which
+		 * steps over the subtree of each child without copying anything.
+		 */
+		@Override
+		public NavigableSet<ECNode> getChildren() {
+			return new NodeView(tree, id, tree.ends[id], new ECNumberPattern(getEcNumber()));
+		}
+
+		@Override
+		public int getDepth() {
+			return tree.depths[id];
+		}
+
+		@Override
+		public String getDescription() {
+			return tree.descriptionOf(id);
+		}
+
+		@Override
+		public ECNode getParent() {
+			return id == 0 ? null : tree.node(tree.parents[id]);
+		}
+
+		@Override
+		public Iterator<ECNode> inOrder() {
+			return new NodeIterator(tree) {
+				private int next = id;
+				private final int end = tree.ends[id];
+
+				@Override
+				public boolean hasNext() {
+					return next < end;
+				}
+
+				@Override
+				int nextId() {
+					return next++;
+				}
+			};
+		}
+
+		@Override
+		protected void setChildren(NavigableSet<ECNode> children) {
+			throw new UnsupportedOperationException("FrozenECTrees are immutable");
+		}
+
+		@Override
+		protected void setParent(ECNode parent) {
+			throw new UnsupportedOperationException("FrozenECTrees are immutable");
+		}
+	}
+
+	/**
+	 * An iterator over node ids that returns views.
+	 */
+	private abstract static class NodeIterator implements Iterator<ECNode> {
+
+		private final FrozenECTree tree;
+
+		NodeIterator(FrozenECTree tree) {
+			this.tree = tree;
+		}
+
+		@Override
+		public ECNode next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			return tree.node(nextId());
+		}
+
+		/**
+		 * Returns the next id. Only called when {@link #hasNext()} is true.
+		 */
+		abstract int nextId();
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("FrozenECTrees are immutable");
+		}
+	}
+
+}
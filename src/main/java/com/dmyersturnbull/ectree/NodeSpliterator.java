@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@link Spliterator} over a range of node ids of a {@link FrozenECTree}
+ * layout, in-order. Splits fall on subtree boundaries: the range is cut at the
+ * start of the sibling subtree nearest its middle, descending one level when a
+ * single subtree spans the middle. For a mutable {@link ECTree}, the layout is
+ * the tree's cached {@link ECTree#freeze() frozen copy} and the nodes returned
+ * are the tree's own.
+ * 
+ * @author dmyersturnbull
+ */
+class NodeSpliterator implements Spliterator<ECNode> {
+
+	private final ECTree tree;
+	private final FrozenECTree layout;
+	private final int expectedModCount;
+	private int lo;
+	private final int hi;
+
+	NodeSpliterator(ECTree tree, int lo, int hi) {
+		this(tree, tree.freeze(), tree.getModCount(), lo, hi);
+	}
+
+	private NodeSpliterator(ECTree tree, FrozenECTree layout, int expectedModCount, int lo, int hi) {
+		this.tree = tree;
+		this.layout = layout;
+		this.expectedModCount = expectedModCount;
+		this.lo = lo;
+		this.hi = hi;
+	}
+
+	@Override
+	public int characteristics() {
+		int characteristics = ORDERED | SORTED | DISTINCT | SIZED | SUBSIZED | NONNULL;
+		if (tree == layout) characteristics |= IMMUTABLE;
+		return characteristics;
+	}
+
+	@Override
+	public long estimateSize() {
+		return hi - lo;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super ECNode> action) {
+		int i = lo;
+		lo = hi;
+		for (; i < hi; i++)
+			action.accept(node(i));
+		checkForComodification();
+	}
+
+	/**
+	 * Returns {@code null}, meaning nodes are in their natural order.
+	 */
+	@Override
+	public Comparator<? super ECNode> getComparator() {
+		return null;
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super ECNode> action) {
+		if (lo >= hi) return false;
+		action.accept(node(lo++));
+		checkForComodification();
+		return true;
+	}
+
+	@Override
+	public Spliterator<ECNode> trySplit() {
+		if (hi - lo < 2) return null;
+		int mid = lo + hi >>> 1;
+		int c = lo;
+		while (true) {
+			while (layout.end(c) <= mid)
+				c = layout.end(c); // skip sibling subtrees that end before the middle
+			if (c > lo) break;
+			c = lo + 1; // one subtree spans the middle, so split among its children
+		}
+		int end = layout.end(c);
+		int split = end < hi && end - mid < mid - c ? end : c;
+		NodeSpliterator prefix = new NodeSpliterator(tree, layout, expectedModCount, lo, split);
+		lo = split;
+		return prefix;
+	}
+
+	private ECNode node(int id) {
+		if (tree == layout) return layout.node(id);
+		return tree.findByEcNumber(layout.numberOf(id));
+	}
+
+	private void checkForComodification() {
+		if (tree.getModCount() != expectedModCount) throw new ConcurrentModificationException();
+	}
+
+}
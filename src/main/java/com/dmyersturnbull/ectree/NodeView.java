@@ -0,0 +1,470 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+/**
+ * An unmodifiable, lazy {@link NavigableSet} of the nodes in a range of ids of
+ * a {@link FrozenECTree} layout that match an optional
+ * {@link ECNumberPattern}, or that are among a sorted array of member ids.
+ * Nothing is copied: iteration in either direction walks the range, skipping
+ * subtrees that cannot match, or steps through the members, and seeks such as
+ * {@link #ceiling(ECNode)} or {@link #tailSet(ECNode)} binary-search the
+ * packed EC numbers. For a mutable {@link ECTree}, the nodes returned are the
+ * tree's own, as of when the view was created.
+ * 
+ * @author dmyersturnbull
+ */
+class NodeView extends AbstractSet<ECNode> implements NavigableSet<ECNode> {
+
+	private final ECTree tree;
+	private final FrozenECTree layout;
+	private final int from;
+	private final int to;
+	private final ECNumberPattern pattern;
+	private final int[] members;
+	private int size = -1;
+
+	/**
+	 * @param pattern
+	 *            The pattern to match, or {@code null} to include every node
+	 *            from {@code from} up to {@code to}
+	 */
+	NodeView(ECTree tree, int from, int to, ECNumberPattern pattern) {
+		this(tree, tree.freeze(), from, to, pattern, null);
+	}
+
+	/**
+	 * Creates a view of the nodes whose ids are in {@code members}, which
+	 * must be sorted and is not copied.
+	 */
+	NodeView(ECTree tree, FrozenECTree layout, int[] members) {
+		this(tree, layout, 0, layout.size(), null, members);
+	}
+
+	private NodeView(ECTree tree, FrozenECTree layout, int from, int to, ECNumberPattern pattern, int[] members) {
+		this.tree = tree;
+		this.layout = layout;
+		this.from = from;
+		this.to = Math.max(from, to);
+		this.pattern = pattern;
+		this.members = members;
+	}
+
+	@Override
+	public int size() {
+		if (members != null) return memberIndex(to) - memberIndex(from);
+		if (size < 0) {
+			int n = 0;
+			for (int i = nextMatch(from); i < to; i = nextMatch(skip(i)))
+				n++;
+			size = n;
+		}
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return nextMatch(from) >= to;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof ECNode)) return false;
+		ECNumber number = ((ECNode) o).getEcNumber();
+		int id = layout.indexOf(number);
+		return id >= from && id < to && matches(id);
+	}
+
+	@Override
+	public Iterator<ECNode> iterator() {
+		return new Iterator<ECNode>() {
+			private int next = nextMatch(from);
+
+			@Override
+			public boolean hasNext() {
+				return next < to;
+			}
+
+			@Override
+			public ECNode next() {
+				if (next >= to) throw new NoSuchElementException();
+				int current = next;
+				next = nextMatch(skip(current));
+				return node(current);
+			}
+		};
+	}
+
+	@Override
+	public Iterator<ECNode> descendingIterator() {
+		return new Iterator<ECNode>() {
+			private int next = previousMatch(to - 1);
+
+			@Override
+			public boolean hasNext() {
+				return next >= from;
+			}
+
+			@Override
+			public ECNode next() {
+				if (next < from) throw new NoSuchElementException();
+				int current = next;
+				next = previousMatch(current - 1);
+				return node(current);
+			}
+		};
+	}
+
+	/**
+	 * Returns {@code null}, meaning nodes are in their natural order.
+	 */
+	@Override
+	public Comparator<? super ECNode> comparator() {
+		return null;
+	}
+
+	@Override
+	public ECNode first() {
+		return orThrow(nextMatch(from));
+	}
+
+	@Override
+	public ECNode last() {
+		return orThrow(previousMatch(to - 1));
+	}
+
+	@Override
+	public ECNode lower(ECNode e) {
+		return orNull(previousMatch(lowerBound(e) - 1));
+	}
+
+	@Override
+	public ECNode floor(ECNode e) {
+		return orNull(previousMatch(upperBound(e) - 1));
+	}
+
+	@Override
+	public ECNode ceiling(ECNode e) {
+		return orNull(nextMatch(lowerBound(e)));
+	}
+
+	@Override
+	public ECNode higher(ECNode e) {
+		return orNull(nextMatch(upperBound(e)));
+	}
+
+	@Override
+	public ECNode pollFirst() {
+		throw new UnsupportedOperationException("Views are unmodifiable");
+	}
+
+	@Override
+	public ECNode pollLast() {
+		throw new UnsupportedOperationException("Views are unmodifiable");
+	}
+
+	/**
+	 * Returns a reversed view of this set over the same range of ids.
+	 */
+	@Override
+	public NavigableSet<ECNode> descendingSet() {
+		return new Descending(this);
+	}
+
+	@Override
+	public NavigableSet<ECNode> subSet(ECNode fromElement, boolean fromInclusive, ECNode toElement,
+			boolean toInclusive) {
+		int lo = fromInclusive ? lowerBound(fromElement) : upperBound(fromElement);
+		int hi = toInclusive ? upperBound(toElement) : lowerBound(toElement);
+		if (lo > hi) throw new IllegalArgumentException("fromElement > toElement");
+		return new NodeView(tree, layout, lo, hi, pattern, members);
+	}
+
+	@Override
+	public NavigableSet<ECNode> headSet(ECNode toElement, boolean inclusive) {
+		return new NodeView(tree, layout, from, inclusive ? upperBound(toElement) : lowerBound(toElement), pattern,
+				members);
+	}
+
+	@Override
+	public NavigableSet<ECNode> tailSet(ECNode fromElement, boolean inclusive) {
+		return new NodeView(tree, layout, inclusive ? lowerBound(fromElement) : upperBound(fromElement), to, pattern,
+				members);
+	}
+
+	@Override
+	public SortedSet<ECNode> subSet(ECNode fromElement, ECNode toElement) {
+		return subSet(fromElement, true, toElement, false);
+	}
+
+	@Override
+	public SortedSet<ECNode> headSet(ECNode toElement) {
+		return headSet(toElement, false);
+	}
+
+	@Override
+	public SortedSet<ECNode> tailSet(ECNode fromElement) {
+		return tailSet(fromElement, true);
+	}
+
+	private boolean matches(int id) {
+		if (members != null) return Arrays.binarySearch(members, id) >= 0;
+		return pattern == null || id > 0 && pattern.matches(layout.code(id));
+	}
+
+	/**
+	 * Returns the index in {@link #members} of the first member not less than
+	 * {@code id}.
+	 */
+	private int memberIndex(int id) {
+		int i = Arrays.binarySearch(members, id);
+		return i >= 0 ? i : -i - 1;
+	}
+
+	/**
+	 * Returns the first matching id at or after {@code id}, or {@link #to}.
+	 */
+	private int nextMatch(int id) {
+		if (members != null) {
+			int i = memberIndex(Math.max(id, from));
+			return i < members.length ? Math.min(members[i], to) : to;
+		}
+		while (id < to && !matches(id)) {
+			if (pattern == null || id == 0 || pattern.mayMatchBelow(layout.code(id))) {
+				id++;
+			} else {
+				id = layout.end(id);
+			}
+		}
+		return Math.min(id, to);
+	}
+
+	/**
+	 * Returns the first id after {@code id} that might match, given that
+	 * {@code id} matches.
+	 */
+	private int skip(int id) {
+		return pattern == null ? id + 1 : layout.end(id);
+	}
+
+	/**
+	 * Returns the last matching id at or before {@code id}, or {@code from - 1}.
+	 * Like {@link #nextMatch(int)}, this steps over whole subtrees that cannot
+	 * match, found through the parents of {@code id}.
+	 */
+	private int previousMatch(int id) {
+		if (members != null) {
+			int i = memberIndex(Math.min(id, to - 1) + 1) - 1;
+			return i >= 0 ? Math.max(members[i], from - 1) : from - 1;
+		}
+		if (pattern == null) return Math.max(id, from - 1);
+		int depth = pattern.getDepth();
+		while (id >= from) {
+			// among the ancestors of id, find the one at the pattern's depth and
+			// the highest whose subtree cannot match
+			int candidate = -1;
+			int dead = -1;
+			for (int a = id; a > 0; a = layout.parent(a)) {
+				long code = layout.code(a);
+				int d = ECNumber.depthOf(code);
+				if (d == depth) {
+					candidate = a;
+				} else if (d < depth && !pattern.mayMatchBelow(code)) {
+					dead = a;
+				}
+			}
+			if (dead >= 0) {
+				id = dead - 1;
+			} else if (candidate < 0) {
+				id--;
+			} else if (candidate < from) {
+				// every id from from to id is below the candidate, so too deep
+				break;
+			} else if (matches(candidate)) {
+				return candidate;
+			} else {
+				id = candidate - 1;
+			}
+		}
+		return from - 1;
+	}
+
+	/**
+	 * Returns the first id in range whose node is not less than {@code e}.
+	 */
+	private int lowerBound(ECNode e) {
+		int i = layout.indexOf(code(e));
+		return clamp(i >= 0 ? i : -i - 1);
+	}
+
+	/**
+	 * Returns the first id in range whose node is greater than {@code e}.
+	 */
+	private int upperBound(ECNode e) {
+		int i = layout.indexOf(code(e));
+		return clamp(i >= 0 ? i + 1 : -i - 1);
+	}
+
+	private int clamp(int id) {
+		return Math.max(from, Math.min(to, id));
+	}
+
+	private static long code(ECNode e) {
+		return e.getEcNumber() == null ? 0 : e.getEcNumber().toLong();
+	}
+
+	private ECNode orThrow(int id) {
+		if (id < from || id >= to) throw new NoSuchElementException();
+		return node(id);
+	}
+
+	private ECNode orNull(int id) {
+		return id < from || id >= to ? null : node(id);
+	}
+
+	private ECNode node(int id) {
+		if (tree == layout) return layout.node(id);
+		return tree.findByEcNumber(layout.numberOf(id));
+	}
+
+	/**
+	 * A reversed view of a NodeView, which answers every query with the
+	 * mirror-image query on it.
+	 */
+	private static final class Descending extends AbstractSet<ECNode> implements NavigableSet<ECNode> {
+
+		private final NodeView view;
+
+		Descending(NodeView view) {
+			this.view = view;
+		}
+
+		@Override
+		public int size() {
+			return view.size();
+		}
+
+		@Override
+		public boolean isEmpty() {
+			return view.isEmpty();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return view.contains(o);
+		}
+
+		@Override
+		public Iterator<ECNode> iterator() {
+			return view.descendingIterator();
+		}
+
+		@Override
+		public Iterator<ECNode> descendingIterator() {
+			return view.iterator();
+		}
+
+		@Override
+		public Comparator<? super ECNode> comparator() {
+			return Collections.reverseOrder();
+		}
+
+		@Override
+		public ECNode first() {
+			return view.last();
+		}
+
+		@Override
+		public ECNode last() {
+			return view.first();
+		}
+
+		@Override
+		public ECNode lower(ECNode e) {
+			return view.higher(e);
+		}
+
+		@Override
+		public ECNode floor(ECNode e) {
+			return view.ceiling(e);
+		}
+
+		@Override
+		public ECNode ceiling(ECNode e) {
+			return view.floor(e);
+		}
+
+		@Override
+		public ECNode higher(ECNode e) {
+			return view.lower(e);
+		}
+
+		@Override
+		public ECNode pollFirst() {
+			throw new UnsupportedOperationException("Views are unmodifiable");
+		}
+
+		@Override
+		public ECNode pollLast() {
+			throw new UnsupportedOperationException("Views are unmodifiable");
+		}
+
+		@Override
+		public NavigableSet<ECNode> descendingSet() {
+			return view;
+		}
+
+		@Override
+		public NavigableSet<ECNode> subSet(ECNode fromElement, boolean fromInclusive, ECNode toElement,
+				boolean toInclusive) {
+			return view.subSet(toElement, toInclusive, fromElement, fromInclusive).descendingSet();
+		}
+
+		@Override
+		public NavigableSet<ECNode> headSet(ECNode toElement, boolean inclusive) {
+			return view.tailSet(toElement, inclusive).descendingSet();
+		}
+
+		@Override
+		public NavigableSet<ECNode> tailSet(ECNode fromElement, boolean inclusive) {
+			return view.headSet(fromElement, inclusive).descendingSet();
+		}
+
+		@Override
+		public SortedSet<ECNode> subSet(ECNode fromElement, ECNode toElement) {
+			return subSet(fromElement, true, toElement, false);
+		}
+
+		@Override
+		public SortedSet<ECNode> headSet(ECNode toElement) {
+			return headSet(toElement, false);
+		}
+
+		@Override
+		public SortedSet<ECNode> tailSet(ECNode fromElement) {
+			return tailSet(fromElement, true);
+		}
+	}
+
+}
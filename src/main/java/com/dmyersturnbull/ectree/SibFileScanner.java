@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scans the bytes of an SIB {@code enzclass.txt} file for class lines such as
+ * {@code "1. 1. 1.-    With NAD(+) or NADP(+) as acceptor."}. Accepts exactly
+ * the lines that {@link ECTreeFactory}'s regular expression accepts: up to
+ * three codes, each but the first after a dot and optional whitespace, then
+ * any run of whitespace, dots, and dashes, then a description starting with an
+ * ASCII letter. Descriptions are passed to the handler as a reused view over
+ * the bytes, so nothing is decoded unless the handler asks for a String. The
+ * bytes are read as UTF-8, like the readers {@link ECTreeFactory} opens.
+ * Codes above {@link ECNumber#MAX_CODE} are rejected as they are by the
+ * regular expression parser.
+ * 
+ * @author dmyersturnbull
+ */
+class SibFileScanner {
+
+	private final ByteBuffer buffer;
+	private int position;
+	private final int limit;
+	private final AsciiView description = new AsciiView();
+
+	SibFileScanner(ByteBuffer buffer) {
+		this.buffer = buffer;
+		position = buffer.position();
+		limit = buffer.limit();
+	}
+
+	/**
+	 * Scans every line, passing each class to {@code handler}.
+	 */
+	void scan(ECClassHandler handler) {
+		int[] codes = new int[3];
+		while (position < limit) {
+			int end = position;
+			while (end < limit && !isLineTerminator(buffer.get(end)))
+				end++;
+			scanLine(position, end, codes, handler);
+			position = end;
+			if (position < limit && buffer.get(position) == '\r') position++;
+			if (position < limit && buffer.get(position) == '\n') position++;
+		}
+	}
+
+	/**
+	 * Passes the class on the line from {@code i} to {@code end} to
+	 * {@code handler}, if it is a class line.
+	 */
+	private void scanLine(int i, int end, int[] codes, ECClassHandler handler) {
+		int depth = 0;
+		// the first code that is out of range, rejected only on a class line
+		int badStart = -1;
+		int badEnd = -1;
+		while (depth < codes.length) {
+			if (depth > 0) {
+				// (?:\.\s*)?(\d+)?
+				if (i < end && buffer.get(i) == '.') {
+					i++;
+					while (i < end && isSpace(buffer.get(i)))
+						i++;
+				}
+			}
+			if (i == end || !isDigit(buffer.get(i))) break;
+			int start = i;
+			int code = 0;
+			while (i < end && isDigit(buffer.get(i))) {
+				// stop accumulating once out of range, so a long run cannot overflow
+				if (code <= ECNumber.MAX_CODE) code = 10 * code + buffer.get(i) - '0';
+				i++;
+			}
+			if (code > ECNumber.MAX_CODE && badStart < 0) {
+				badStart = start;
+				badEnd = i;
+			}
+			codes[depth++] = code;
+		}
+		if (depth == 0) return;
+		// [\s\.-]*
+		while (i < end && (isSpace(buffer.get(i)) || buffer.get(i) == '.' || buffer.get(i) == '-'))
+			i++;
+		if (i == end || !isLetter(buffer.get(i))) return;
+		if (badStart >= 0) {
+			throw new IllegalArgumentException("EC code " + decode(badStart, badEnd) + " is out of range");
+		}
+		ECNumber number = ECNumber.valueOf(codes, depth);
+		if (description.reset(i, end)) {
+			handler.onClass(number, description);
+		} else {
+			handler.onClass(number, decode(i, end));
+		}
+	}
+
+	private String decode(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int k = 0; k < bytes.length; k++)
+			bytes[k] = buffer.get(start + k);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static boolean isLineTerminator(byte b) {
+		return b == '\n' || b == '\r';
+	}
+
+	/**
+	 * Matches \s in a Java regular expression.
+	 */
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == 0x0B || b == '\f' || b == '\r' || b == '\n';
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private static boolean isLetter(byte b) {
+		return b >= 'A' && b <= 'Z' || b >= 'a' && b <= 'z';
+	}
+
+	/**
+	 * A reusable view of an ASCII range of the buffer.
+	 */
+	private final class AsciiView implements CharSequence {
+
+		private int start;
+		private int end;
+
+		/**
+		 * Points this view at bytes {@code start} to {@code end}.
+		 * 
+		 * @return false if the range is not ASCII, in which case it must be
+		 *         decoded instead
+		 */
+		boolean reset(int start, int end) {
+			for (int i = start; i < end; i++) {
+				if (buffer.get(i) < 0) return false;
+			}
+			this.start = start;
+			this.end = end;
+			return true;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index < 0 || index >= length()) throw new IndexOutOfBoundsException("Index " + index);
+			return (char) buffer.get(start + index);
+		}
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			return toString().substring(from, to);
+		}
+
+		@Override
+		public String toString() {
+			return decode(start, end);
+		}
+	}
+
+}
@@ -0,0 +1,308 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An immutable list of strings stored as UTF-8 in a single byte buffer, so that
+ * string {@code i} occupies bytes {@code offsets[i]} up to
+ * {@code offsets[i + 1]}. Strings are decoded only when requested. The buffer
+ * is either a heap array or a region of a memory-mapped
+ * {@link FrozenECTree snapshot}; it is only read with absolute gets, so it is
+ * safe to share between threads.
+ * Case-insensitive matching of ASCII queries works on the bytes directly,
+ * which is safe because UTF-8 never uses ASCII byte values inside multi-byte
+ * characters.
+ * 
+ * A pool can also be a view that selects strings of another pool by index,
+ * which lets several trees share one deduplicated pool. A view selects
+ * {@code null} with the index -1.
+ * 
+ * @author dmyersturnbull
+ */
+class StringPool {
+
+	private final ByteBuffer bytes;
+	private final int[] offsets;
+
+	/**
+	 * For a view, the index in {@link #offsets} of each string, or -1 for
+	 * {@code null}; otherwise {@code null}
+	 */
+	private final int[] ids;
+
+	/**
+	 * @param strings
+	 *            The strings to store; {@code null} is stored as the empty
+	 *            string
+	 */
+	StringPool(String[] strings) {
+		byte[][] encoded = new byte[strings.length][];
+		offsets = new int[strings.length + 1];
+		for (int i = 0; i < strings.length; i++) {
+			encoded[i] = strings[i] == null ? new byte[0] : strings[i].getBytes(StandardCharsets.UTF_8);
+			offsets[i + 1] = offsets[i] + encoded[i].length;
+		}
+		byte[] array = new byte[offsets[strings.length]];
+		for (int i = 0; i < strings.length; i++)
+			System.arraycopy(encoded[i], 0, array, offsets[i], encoded[i].length);
+		bytes = ByteBuffer.wrap(array);
+		ids = null;
+	}
+
+	private StringPool(ByteBuffer bytes, int[] offsets, int[] ids) {
+		this.bytes = bytes;
+		this.offsets = offsets;
+		this.ids = ids;
+	}
+
+	/**
+	 * Returns a view whose string {@code i} is string {@code ids[i]} of the
+	 * strings stored in {@code bytes} as {@code offsets} delimit them. Nothing
+	 * is copied.
+	 */
+	static StringPool select(byte[] bytes, int[] offsets, int[] ids) {
+		return new StringPool(ByteBuffer.wrap(bytes), offsets, ids);
+	}
+
+	/**
+	 * Returns a view whose string {@code i} is string {@code ids[i]} of this
+	 * pool. Nothing is copied.
+	 */
+	StringPool select(int[] ids) {
+		if (this.ids != null) throw new IllegalStateException("Already a view");
+		return new StringPool(bytes, offsets, ids);
+	}
+
+	/**
+	 * Reads a pool written by {@link #write(DataOutputStream)} from the
+	 * current position of {@code buffer}, advancing it. The string bytes are
+	 * not copied.
+	 * 
+	 * @throws IOException
+	 *             If the count or offsets are inconsistent with the buffer
+	 */
+	static StringPool read(ByteBuffer buffer) throws IOException {
+		int count = buffer.getInt();
+		if (count < 1 || count > buffer.remaining() / 4) throw new IOException("Bad string count " + count);
+		int[] offsets = new int[count];
+		buffer.asIntBuffer().get(offsets);
+		buffer.position(buffer.position() + 4 * offsets.length);
+		int length = offsets[offsets.length - 1];
+		if (offsets[0] != 0 || length > buffer.remaining()) throw new IOException("Bad string offsets");
+		for (int i = 1; i < count; i++) {
+			if (offsets[i] < offsets[i - 1]) throw new IOException("Bad string offsets");
+		}
+		ByteBuffer bytes = buffer.slice();
+		bytes.limit(length);
+		buffer.position(buffer.position() + length);
+		return new StringPool(bytes, offsets, null);
+	}
+
+	/**
+	 * Writes the number of offsets, the offsets, and the string bytes. A view
+	 * is written as a plain pool of its own strings.
+	 */
+	void write(DataOutputStream out) throws IOException {
+		if (ids != null) {
+			String[] strings = new String[size()];
+			for (int i = 0; i < strings.length; i++)
+				strings[i] = get(i);
+			new StringPool(strings).write(out);
+			return;
+		}
+		out.writeInt(offsets.length);
+		for (int offset : offsets)
+			out.writeInt(offset);
+		int length = offsets[offsets.length - 1];
+		if (bytes.hasArray()) {
+			out.write(bytes.array(), bytes.arrayOffset(), length);
+		} else {
+			for (int i = 0; i < length; i++)
+				out.writeByte(bytes.get(i));
+		}
+	}
+
+	String get(int i) {
+		if (ids != null) i = ids[i];
+		return i < 0 ? null : decode(i);
+	}
+
+	private String decode(int i) {
+		int start = offsets[i];
+		int length = offsets[i + 1] - start;
+		if (bytes.hasArray()) {
+			return new String(bytes.array(), bytes.arrayOffset() + start, length, StandardCharsets.UTF_8);
+		}
+		byte[] copy = new byte[length];
+		for (int k = 0; k < length; k++)
+			copy[k] = bytes.get(start + k);
+		return new String(copy, StandardCharsets.UTF_8);
+	}
+
+	int size() {
+		return ids != null ? ids.length : offsets.length - 1;
+	}
+
+	/**
+	 * Returns the number of strings this pool stores, or for a view, the
+	 * number of distinct strings it selects.
+	 */
+	int storedSize() {
+		return ids != null ? distinctIds().length : size();
+	}
+
+	/**
+	 * Returns the number of bytes taken by the strings counted by
+	 * {@link #storedSize()}.
+	 */
+	long storedByteSize() {
+		if (ids == null) return offsets[size()];
+		long n = 0;
+		for (int id : distinctIds())
+			n += offsets[id + 1] - offsets[id];
+		return n;
+	}
+
+	/**
+	 * Returns the indices a view selects, once each and without -1, in
+	 * increasing order.
+	 */
+	private int[] distinctIds() {
+		int[] sorted = ids.clone();
+		Arrays.sort(sorted);
+		int n = 0;
+		for (int id : sorted) {
+			if (id >= 0 && (n == 0 || sorted[n - 1] != id)) sorted[n++] = id;
+		}
+		return Arrays.copyOf(sorted, n);
+	}
+
+	/**
+	 * Returns true if string {@code i} contains {@code query}, ignoring case
+	 * as {@link #foldCase(char)} does. {@code null} matches nothing.
+	 */
+	boolean containsIgnoreCase(int i, String query) {
+		if (ids != null) i = ids[i];
+		if (i < 0) return false;
+		if (isAscii(query)) {
+			int last = offsets[i + 1] - query.length();
+			for (int j = offsets[i]; j <= last; j++) {
+				if (regionMatchesAscii(j, query)) return true;
+			}
+			// a non-ASCII character such as U+017F can still fold to an ASCII one
+			if (isAscii(i)) return false;
+		}
+		return containsIgnoreCase(decode(i), query);
+	}
+
+	/**
+	 * Returns true if string {@code i} equals {@code query}, ignoring case as
+	 * {@link #foldCase(char)} does.
+	 */
+	boolean equalsIgnoreCase(int i, String query) {
+		if (ids != null) i = ids[i];
+		if (i < 0) return false;
+		if (isAscii(query)) {
+			int start = offsets[i];
+			if (offsets[i + 1] - start == query.length() && regionMatchesAscii(start, query)) return true;
+			if (isAscii(i)) return false;
+		}
+		return equalsIgnoreCase(decode(i), query);
+	}
+
+	/**
+	 * Returns true if the bytes of string {@code i} are all ASCII.
+	 */
+	private boolean isAscii(int i) {
+		for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+			if (bytes.get(k) < 0) return false;
+		}
+		return true;
+	}
+
+	private boolean regionMatchesAscii(int start, String query) {
+		for (int k = 0; k < query.length(); k++) {
+			if (toLowerAscii(bytes.get(start + k)) != toLowerAscii(query.charAt(k))) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Folds the case of {@code c}. Two characters are equal ignoring case, in
+	 * the sense of {@link String#regionMatches(boolean, int, String, int, int)}
+	 * , exactly when their folds are equal. Every case-insensitive match on
+	 * descriptions, with or without an index, uses this.
+	 */
+	static char foldCase(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Returns {@code s} with each character {@link #foldCase(char) folded}.
+	 * The length is unchanged.
+	 */
+	static String foldCase(String s) {
+		char[] folded = new char[s.length()];
+		for (int i = 0; i < folded.length; i++)
+			folded[i] = foldCase(s.charAt(i));
+		return new String(folded);
+	}
+
+	/**
+	 * Returns true if {@code string} contains {@code query}, ignoring case as
+	 * {@link #foldCase(char)} does.
+	 */
+	static boolean containsIgnoreCase(String string, String query) {
+		for (int i = 0; i + query.length() <= string.length(); i++) {
+			if (regionMatchesFolded(string, i, query)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns true if {@code string} equals {@code query}, ignoring case as
+	 * {@link #foldCase(char)} does.
+	 */
+	static boolean equalsIgnoreCase(String string, String query) {
+		return string.length() == query.length() && regionMatchesFolded(string, 0, query);
+	}
+
+	private static boolean regionMatchesFolded(String string, int start, String query) {
+		for (int k = 0; k < query.length(); k++) {
+			char a = string.charAt(start + k);
+			char b = query.charAt(k);
+			if (a != b && foldCase(a) != foldCase(b)) return false;
+		}
+		return true;
+	}
+
+	static int toLowerAscii(int c) {
+		return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+	}
+
+	static boolean isAscii(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) >= 0x80) return false;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,234 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An inverted index from words to the nodes of a {@link FrozenECTree} whose
+ * descriptions contain them, for ranking descriptions against a query with
+ * BM25. Words are maximal runs of letters and digits, lowercased. Posting
+ * lists hold node ids in increasing order with the number of times the word
+ * occurs, so a query merges the lists of its words document-at-a-time, scoring
+ * only nodes that contain at least one word, and keeps the best in a bounded
+ * heap.
+ * 
+ * @author dmyersturnbull
+ */
+class TextIndex {
+
+	private static final double K1 = 1.2;
+	private static final double B = 0.75;
+
+	private final Map<String, Postings> postings;
+	private final int[] lengths;
+	private final double averageLength;
+	private final int documents;
+
+	TextIndex(FrozenECTree tree) {
+		int n = tree.size();
+		lengths = new int[n];
+		Map<String, Postings> postings = new HashMap<>();
+		Map<String, Integer> counts = new HashMap<>();
+		long total = 0;
+		for (int id = 1; id < n; id++) {
+			String description = tree.descriptionOf(id);
+			if (description == null) continue;
+			counts.clear();
+			for (String word : tokenize(description)) {
+				counts.merge(word, 1, Integer::sum);
+				lengths[id]++;
+			}
+			total += lengths[id];
+			for (Map.Entry<String, Integer> e : counts.entrySet())
+				postings.computeIfAbsent(e.getKey(), k -> new Postings()).add(id, e.getValue());
+		}
+		for (Postings p : postings.values())
+			p.trim();
+		this.postings = postings;
+		documents = n - 1;
+		averageLength = documents == 0 ? 0 : (double) total / documents;
+	}
+
+	/**
+	 * Returns the ids of up to {@code limit} nodes with ids from {@code from}
+	 * up to {@code to} whose descriptions best match {@code query}, best
+	 * first; ties are broken in-order.
+	 */
+	int[] search(String query, int limit, int from, int to) {
+		List<Postings> lists = new ArrayList<>();
+		List<Double> weights = new ArrayList<>();
+		for (String word : new LinkedHashSet<>(tokenize(query))) {
+			Postings p = postings.get(word);
+			if (p == null) continue;
+			lists.add(p);
+			weights.add(Math.log(1 + (documents - p.size + 0.5) / (p.size + 0.5)));
+		}
+		int m = lists.size();
+		int[] cursors = new int[m];
+		int[] ends = new int[m];
+		for (int t = 0; t < m; t++) {
+			cursors[t] = lists.get(t).lowerBound(from);
+			ends[t] = lists.get(t).lowerBound(to);
+		}
+		TopK top = new TopK(limit);
+		while (true) {
+			int id = Integer.MAX_VALUE;
+			for (int t = 0; t < m; t++) {
+				if (cursors[t] < ends[t]) id = Math.min(id, lists.get(t).ids[cursors[t]]);
+			}
+			if (id == Integer.MAX_VALUE) break;
+			double norm = K1 * (1 - B + B * lengths[id] / averageLength);
+			double score = 0;
+			for (int t = 0; t < m; t++) {
+				Postings p = lists.get(t);
+				if (cursors[t] < ends[t] && p.ids[cursors[t]] == id) {
+					int tf = p.frequencies[cursors[t]++];
+					score += weights.get(t) * tf * (K1 + 1) / (tf + norm);
+				}
+			}
+			top.offer(id, score);
+		}
+		return top.drain();
+	}
+
+	static List<String> tokenize(String text) {
+		List<String> words = new ArrayList<>();
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (inWord && start < 0) {
+				start = i;
+			} else if (!inWord && start >= 0) {
+				words.add(StringPool.foldCase(text.substring(start, i)));
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Node ids in increasing order, each with the number of times the word
+	 * occurs in that node's description.
+	 */
+	private static final class Postings {
+
+		int[] ids = new int[4];
+		int[] frequencies = new int[4];
+		int size;
+
+		void add(int id, int frequency) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * size);
+				frequencies = Arrays.copyOf(frequencies, 2 * size);
+			}
+			ids[size] = id;
+			frequencies[size++] = frequency;
+		}
+
+		void trim() {
+			ids = Arrays.copyOf(ids, size);
+			frequencies = Arrays.copyOf(frequencies, size);
+		}
+
+		int lowerBound(int id) {
+			int i = Arrays.binarySearch(ids, 0, size, id);
+			return i >= 0 ? i : -i - 1;
+		}
+	}
+
+	/**
+	 * A min-heap of the best {@code limit} ids seen, by score and then by
+	 * lower id.
+	 */
+	private static final class TopK {
+
+		private final int[] ids;
+		private final double[] scores;
+		private int size;
+
+		TopK(int limit) {
+			ids = new int[limit];
+			scores = new double[limit];
+		}
+
+		void offer(int id, double score) {
+			if (size < ids.length) {
+				ids[size] = id;
+				scores[size] = score;
+				up(size++);
+			} else if (size > 0 && better(score, id, scores[0], ids[0])) {
+				ids[0] = id;
+				scores[0] = score;
+				down(0);
+			}
+		}
+
+		/**
+		 * Empties the heap, returning its ids best first.
+		 */
+		int[] drain() {
+			int[] best = new int[size];
+			for (int i = size - 1; i >= 0; i--) {
+				best[i] = ids[0];
+				size--;
+				ids[0] = ids[size];
+				scores[0] = scores[size];
+				down(0);
+			}
+			return best;
+		}
+
+		private static boolean better(double score, int id, double otherScore, int otherId) {
+			return score > otherScore || score == otherScore && id < otherId;
+		}
+
+		private void up(int i) {
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!better(scores[parent], ids[parent], scores[i], ids[i])) break;
+				swap(i, parent);
+				i = parent;
+			}
+		}
+
+		private void down(int i) {
+			while (true) {
+				int worst = i;
+				for (int c = 2 * i + 1; c <= 2 * i + 2 && c < size; c++) {
+					if (better(scores[worst], ids[worst], scores[c], ids[c])) worst = c;
+				}
+				if (worst == i) return;
+				swap(i, worst);
+				i = worst;
+			}
+		}
+
+		private void swap(int a, int b) {
+			int id = ids[a];
+			ids[a] = ids[b];
+			ids[b] = id;
+			double score = scores[a];
+			scores[a] = scores[b];
+			scores[b] = score;
+		}
+	}
+
+}
@@ -0,0 +1,51 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ * 
+ * @author dmyersturnbull
+ */
+package com.dmyersturnbull.ectree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An {@link ECClassHandler} that builds an {@link ECTree}. Classes may arrive
+ * in any order: they are grouped by depth, then added level by level so that
+ * every parent is added before its children and is found through the tree's
+ * index in constant time. If a number appears more than once, the first node
+ * wins.
+ * 
+ * @author dmyersturnbull
+ */
+class TreeBuilder implements ECClassHandler {
+
+	private final List<List<ECNode>> levels = new ArrayList<List<ECNode>>();
+
+	@Override
+	public void onClass(ECNumber ecNumber, CharSequence description) {
+		int depth = ecNumber.getDepth();
+		while (levels.size() < depth)
+			levels.add(new ArrayList<ECNode>());
+		levels.get(depth - 1).add(new ECNode(ecNumber, description.toString()));
+	}
+
+	ECTree build() {
+		ECTree tree = new ECTree();
+		for (List<ECNode> level : levels) {
+			for (ECNode node : level) {
+				if (tree.findByEcNumber(node.getEcNumber()) == null) tree.addFast(node);
+			}
+		}
+		return tree;
+	}
+
+}
@@ -19,20 +19,46 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.ConcurrentModificationException;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NavigableSet;
+import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.dmyersturnbull.ectree.ConcurrentECTree;
+import com.dmyersturnbull.ectree.ECCounter;
 import com.dmyersturnbull.ectree.ECNode;
+import com.dmyersturnbull.ectree.ECNodeSet;
 import com.dmyersturnbull.ectree.ECNumber;
+import com.dmyersturnbull.ectree.ECResolver;
 import com.dmyersturnbull.ectree.ECTree;
+import com.dmyersturnbull.ectree.ECTreeDiff;
 import com.dmyersturnbull.ectree.ECTreeFactory;
+import com.dmyersturnbull.ectree.ECTreeRegistry;
+import com.dmyersturnbull.ectree.EnzymeNode;
+import com.dmyersturnbull.ectree.FrozenECTree;
 
 public class IntegrationTest {
 
@@ -63,6 +89,224 @@ public class IntegrationTest {
 		}
 	}
 
+	@Test(expected = ConcurrentModificationException.class)
+	public void testConcurrentModification() {
+		Iterator<ECNode> iter = tree.inOrder();
+		iter.next();
+		tree.add(new ECNode(new ECNumber("6.6.2"), "Added during iteration."));
+		iter.next();
+	}
+
+	@Test
+	public void testConcurrentReadersAndWriters() throws InterruptedException {
+		ConcurrentECTree concurrent = new ConcurrentECTree(tree);
+		List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+		AtomicBoolean writing = new AtomicBoolean(true);
+		List<Thread> writers = new ArrayList<Thread>();
+		for (int a = 7; a <= 8; a++) {
+			int top = a;
+			writers.add(new Thread(() -> {
+				try {
+					concurrent.add(new ECNode(new ECNumber(top + ""), "Test."));
+					for (int b = 1; b <= 20; b++) {
+						concurrent.add(new ECNode(new ECNumber(top + "." + b), "Test."));
+						for (int c = 1; c <= 10; c++)
+							concurrent.add(new ECNode(new ECNumber(top + "." + b + "." + c), "Test."));
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+			}));
+		}
+		List<Thread> readers = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			readers.add(new Thread(() -> {
+				try {
+					int lastSize = 0;
+					while (writing.get()) {
+						FrozenECTree version = concurrent.freeze();
+						int n = 0;
+						for (ECNode node : version) {
+							n++;
+							if (node.isRoot()) continue;
+							ECNode parent = node.getParent();
+							assertTrue("Half-linked " + node, parent != null && parent.getChildren().contains(node));
+						}
+						assertEquals("Wrong size", version.size(), n);
+						assertTrue("Size went backward", n >= lastSize);
+						lastSize = n;
+						ECNode found = concurrent.findByEcNumber("7.1");
+						assertTrue("Wrong node", found == null || found.getParent().getEcNumber().toString().equals("7"));
+					}
+				} catch (Throwable e) {
+					errors.add(e);
+				}
+			}));
+		}
+		for (Thread thread : readers)
+			thread.start();
+		for (Thread thread : writers)
+			thread.start();
+		for (Thread thread : writers)
+			thread.join();
+		writing.set(false);
+		for (Thread thread : readers)
+			thread.join();
+		assertEquals("Errors in threads: " + errors, 0, errors.size());
+		assertEquals("Wrong size", 334 + 2 * (1 + 20 + 200), concurrent.size());
+		assertEquals("Wrong node", "Test.", concurrent.findByEcNumber("8.20.10").getDescription());
+		FrozenECTree published = concurrent.freeze();
+		assertTrue("Published without changes", published == concurrent.freeze());
+		// adds between reads are published together by the next read
+		concurrent.add(new ECNode(new ECNumber("9"), "Test."));
+		concurrent.add(new ECNode(new ECNumber("9.1"), "Test."));
+		assertEquals("Published version changed", 334 + 2 * (1 + 20 + 200), published.size());
+		assertEquals("Wrong size", published.size() + 2, concurrent.freeze().size());
+		assertEquals("Wrong parent", "9", concurrent.findByEcNumber("9.1").getParent().getEcNumber().toString());
+	}
+
+	@Test
+	public void testCounter() throws InterruptedException {
+		ECCounter counter = tree.counter();
+		ECNumber sulfurTransferases = new ECNumber("2.8.1");
+		int esterases = tree.getNodeId(new ECNumber("3.1.6"));
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < 4; t++) {
+			threads.add(new Thread(() -> {
+				counter.increment(0);
+				for (int i = 0; i < 10000; i++) {
+					counter.increment(sulfurTransferases);
+					counter.add(esterases, 2);
+				}
+			}));
+		}
+		for (Thread thread : threads)
+			thread.start();
+		for (Thread thread : threads)
+			thread.join();
+		assertTrue("Should not count", !counter.increment(new ECNumber("9.9.9")));
+		counter.rollUp();
+		assertEquals("Wrong count", 4, counter.getCount(0));
+		assertEquals("Wrong total", 4 + 40000 + 80000, counter.getTotal(0));
+		assertEquals("Wrong total", 80000, counter.getTotal(tree.findByEcNumber("3.1")));
+		assertEquals("Wrong total", 80000, counter.getTotal(tree.findByEcNumber("3")));
+		assertEquals("Wrong total", 40000, counter.getTotal(tree.findByEcNumber("2.8.1")));
+		assertEquals("Wrong total", 0, counter.getTotal(tree.findByEcNumber("1")));
+		counter.reset();
+		counter.rollUp();
+		assertEquals("Wrong total after reset", 0, counter.getTotal(0));
+	}
+
+	@Test
+	public void testDepthFirst() {
+		Set<ECNode> seen = new HashSet<ECNode>();
+		ECNode last = null;
+		Iterator<ECNode> iter = tree.depthFirst();
+		while (iter.hasNext()) {
+			last = iter.next();
+			for (ECNode child : last.getChildren())
+				assertTrue(child.getEcNumber() + " did not precede its parent", seen.contains(child));
+			seen.add(last);
+		}
+		assertEquals("Wrong number of nodes", 334, seen.size());
+		assertTrue("Root was not last", last.isRoot());
+	}
+
+	@Test
+	public void testDiff() throws IOException {
+		String text = new String(Files.readAllBytes(Paths.get("src/main/resources/enzclass_2013-07-24.txt")),
+				StandardCharsets.UTF_8);
+		text = text.replace("1. 1. 1.-    With NAD(+) or NADP(+) as acceptor.",
+				"1. 1. 1.-    With NAD(P)(+) as acceptor.");
+		text = text.replace("3. 1. 6.-    Sulfuric ester hydrolases.", "3. 1.60.-    Sulfuric ester hydrolases.");
+		text = text.replace("6. 6. 1.-    Forming coordination complexes.", "");
+		text = text.replace("1. 4. 3.-    With oxygen as acceptor.", "");
+		text += "6. 6. 9.-  With oxygen as acceptor.\n";
+		text += "7. -. -.-  Translocases.\n";
+		ECTree newTree = ECTreeFactory.fromSibFile(new BufferedReader(new StringReader(text)));
+		List<String> changes = new ArrayList<String>();
+		ECTreeDiff.diff(tree, newTree, change -> changes.add(change.toString()));
+		assertEquals("Wrong changes", Arrays.asList(
+				"RENAMED: 1.1.1: With NAD(+) or NADP(+) as acceptor. -> 1.1.1: With NAD(P)(+) as acceptor.",
+				"REMOVED: 1.4.3: With oxygen as acceptor.",
+				"MOVED: 3.1.6: Sulfuric ester hydrolases. -> 3.1.60: Sulfuric ester hydrolases.",
+				"REMOVED: 6.6.1: Forming coordination complexes.", "ADDED: 6.6.9: With oxygen as acceptor.",
+				"ADDED: 7: Translocases."), changes);
+		assertEquals("Should be identical", 0, ECTreeDiff.diff(tree, tree.freeze()).size());
+	}
+
+	@Test
+	public void testEcNumber() {
+		ECNumber number = ECNumber.valueOf(3, 2, 1, 4);
+		assertTrue("Not shared", number == ECNumber.valueOf("3.2.1.4"));
+		assertTrue("Not shared", number == ECNumber.fromLong(number.toLong()));
+		assertTrue("Parent not shared", number.getParentNumber() == ECNumber.valueOf(3, 2, 1));
+		assertEquals("Wrong equality", number, new ECNumber(new int[] { 3, 2, 1, 4 }));
+		assertEquals("Wrong string", "3.2.1.4", number.toString());
+		assertEquals("Wrong depth", 4, number.getDepth());
+		assertEquals("Wrong code", 2, number.getCodeAtDepth(2));
+		assertTrue("Parent must precede child", number.getParentNumber().compareTo(number) < 0);
+		assertTrue("Wrong sibling order", ECNumber.valueOf(3, 2, 10).compareTo(ECNumber.valueOf(3, 2, 9)) > 0);
+		assertTrue("Wrong cousin order", ECNumber.valueOf(3, 3).compareTo(number) > 0);
+	}
+
+	@Test
+	public void testEcNumberParse() {
+		assertTrue("Wrong parse", ECNumber.parse("3.2.1.-") == ECNumber.valueOf(3, 2, 1));
+		assertTrue("Wrong parse", ECNumber.parse("3.2.-.-") == ECNumber.valueOf(3, 2));
+		assertTrue("Wrong parse", ECNumber.parse(" EC 3.2.1.4 ") == ECNumber.valueOf(3, 2, 1, 4));
+		assertTrue("Wrong parse", ECNumber.parse("ec:3.2.1.4") == ECNumber.valueOf(3, 2, 1, 4));
+		assertTrue("Wrong parse", ECNumber.parse("1. 1.98.-") == ECNumber.valueOf(1, 1, 98));
+		byte[] bytes = "id=3.4.21.5;".getBytes();
+		assertTrue("Wrong parse", ECNumber.parse(bytes, 3, 8) == ECNumber.valueOf(3, 4, 21, 5));
+		ECNumber preliminary = ECNumber.parse("3.2.1.n12");
+		assertEquals("Wrong string", "3.2.1.n12", preliminary.toString());
+		assertTrue("Wrong preliminary flag", preliminary.isPreliminaryAtDepth(4) && !preliminary.isPreliminaryAtDepth(3));
+		assertEquals("Wrong preliminary code", 12, preliminary.getCodeAtDepth(4));
+		assertTrue("Wrong preliminary flag", preliminary.isPreliminary() && !ECNumber.valueOf(3, 2, 1, 12).isPreliminary());
+		assertTrue("Preliminary must follow numbered", preliminary.compareTo(ECNumber.valueOf(3, 2, 1, 200)) > 0);
+		for (String bad : new String[] { "", "EC", "3..1", "3.2.", "3.-.1", "3.2.1.4.5", "3.x", "99999", "-", "-.-.-.-" }) {
+			try {
+				ECNumber.parse(bad);
+				fail("Parsed " + bad);
+			} catch (IllegalArgumentException expected) {
+			}
+		}
+	}
+
+	@Test
+	public void testEnzymeDat() throws IOException {
+		File sibFile = new File("src/main/resources/enzclass_2013-07-24.txt");
+		File enzymeDat = new File("src/test/resources/enzyme_sample.dat");
+		ECTree full = ECTreeFactory.fromSibFileAndEnzymeDat(sibFile, enzymeDat, EnumSet.allOf(EnzymeNode.Field.class));
+		assertEquals("Wrong number of enzymes", 4, full.findNodesOfDepth(4).size());
+		assertEquals("Kept a transferred entry", null, full.findByEcNumber("1.1.1.5"));
+		assertEquals("Kept a deleted entry", null, full.findByEcNumber("1.1.1.74"));
+		assertEquals("Kept an entry without its class", null, full.findByEcNumber("7.1.1.1"));
+		assertEquals("Added a child to the root", 6, full.findNodesOfDepth(1).size());
+		EnzymeNode adh = (EnzymeNode) full.findByEcNumber("1.1.1.1");
+		assertEquals("Wrong name", "Alcohol dehydrogenase.", adh.getDescription());
+		assertTrue("Wrong parent", adh.getParent() == full.findByEcNumber("1.1.1"));
+		assertEquals("Wrong alternate names", Arrays.asList("Aldehyde reductase."), adh.getAlternateNames());
+		assertEquals("Wrong activities", 2, adh.getCatalyticActivities().size());
+		assertEquals("Wrong cofactors", "Zn(2+) or Fe cation.", adh.getCofactors());
+		assertTrue("Wrong comments", adh.getComments().startsWith("Acts on primary")
+				&& adh.getComments().contains("\nThe animal"));
+		assertEquals("Wrong accessions", Arrays.asList("P07327", "P28469", "Q5RBP7", "P25405"),
+				adh.getUniProtAccessions());
+		EnzymeNode kinase = (EnzymeNode) full.findByEcNumber("2.7.11.1");
+		assertEquals("Wrong alternate names", 2, kinase.getAlternateNames().size());
+		assertEquals("Wrong multi-line name",
+				"Preliminary beta-glucosidase with a description that continues onto a second line.",
+				full.findByEcNumber("3.2.1.n1").getDescription());
+
+		ECTree light = ECTreeFactory.fromSibFileAndEnzymeDat(sibFile, enzymeDat,
+				EnumSet.noneOf(EnzymeNode.Field.class));
+		adh = (EnzymeNode) light.findByEcNumber("1.1.1.1");
+		assertTrue("Kept skipped fields", adh.getUniProtAccessions().isEmpty() && adh.getAlternateNames().isEmpty()
+				&& adh.getComments() == null);
+	}
+
 	@Test
 	public void testExactSearch() throws IOException {
 		NavigableSet<ECNode> nodes = tree.findByExactDescription("Forming carbon-sulfur bonds.");
@@ -73,6 +317,87 @@ public class IntegrationTest {
 		fail("Didn't find 6.2");
 	}
 
+	@Test
+	public void testFindByEcNumber() {
+		ECNode node = tree.findByEcNumber("3.2.1");
+		assertEquals("Wrong node", "3.2.1", node.getEcNumber().toString());
+		assertTrue("Wrong parent", node.getParent() == tree.findByEcNumber("3.2"));
+		assertTrue("Wrong subtree lookup", tree.findByEcNumber("3").findByEcNumber("3.2.1") == node);
+		assertEquals("Found node outside subtree", null, tree.findByEcNumber("2").findByEcNumber("3.2.1"));
+		assertEquals("Found nonexistent node", null, tree.findByEcNumber("3.2.200"));
+	}
+
+	@Test
+	public void testFrozen() throws IOException {
+		FrozenECTree frozen = tree.freeze();
+		assertTrue("Not cached", frozen == tree.freeze());
+		assertEquals("Wrong size", tree.size(), frozen.size());
+		assertEquals("Wrong in-order output", readExpectedInOrder(), toInOrderString(frozen));
+		assertEquals("Wrong breadth-first order", toList(tree.breadthFirst()), toList(frozen.breadthFirst()));
+		assertEquals("Wrong depth-first order", toList(tree.depthFirst()), toList(frozen.depthFirst()));
+		for (int depth = 0; depth <= 4; depth++)
+			assertEquals("Wrong nodes of depth", tree.findNodesOfDepth(depth), frozen.findNodesOfDepth(depth));
+		assertSulfurNodes(frozen.findByDescriptionSubstring("Sulfur"));
+		assertEquals("Wrong exact search", tree.findByExactDescription("Forming carbon-sulfur bonds."),
+				frozen.findByExactDescription("FORMING carbon-sulfur bonds."));
+		ECNode node = frozen.findByEcNumber("3.2.1");
+		assertEquals("Wrong description", tree.findByEcNumber("3.2.1").getDescription(), node.getDescription());
+		assertEquals("Wrong parent", "3.2", node.getParent().getEcNumber().toString());
+		assertEquals("Wrong children", toList(tree.findByEcNumber("3.2").getChildren().iterator()),
+				toList(node.getParent().getChildren().iterator()));
+		assertEquals("Wrong root children", 6, frozen.findByEcNumber("3").getParent().getChildren().size());
+		ECNode mutable = tree.findByEcNumber("3.2.1");
+		assertTrue("Should be equal", node.equals(mutable) && mutable.equals(node) && node.hashCode() == mutable.hashCode());
+		assertTrue("Should contain", new HashSet<ECNode>(tree.findByEcNumber("3.2").getChildren()).contains(node));
+		assertEquals("Found node outside subtree", null, frozen.findByEcNumber("2").findByEcNumber("3.2.1"));
+		assertEquals("Wrong subtree lookup", node, frozen.findByEcNumber("3").findByEcNumber("3.2.1"));
+		tree.add(new ECNode(new ECNumber("6.6.2"), "Added after freezing."));
+		assertTrue("Stale copy", frozen != tree.freeze() && tree.freeze().findByEcNumber("6.6.2") != null);
+		assertEquals("Frozen copy changed", null, frozen.findByEcNumber("6.6.2"));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testFrozenIsImmutable() {
+		tree.freeze().add(new ECNode(new ECNumber("6.6.2"), "Not allowed."));
+	}
+
+	@Test
+	public void testLowestCommonAncestor() {
+		assertEquals("Wrong LCA", "3.2", lca("3.2.1", "3.2.2"));
+		assertEquals("Wrong LCA", "3", lca("3.2.1", "3.1"));
+		assertEquals("Wrong LCA", "3.2", lca("3.2.1", "3.2"));
+		assertEquals("Wrong LCA", "3.2.1", lca("3.2.1", "3.2.1"));
+		assertEquals("Wrong LCA", "null", lca("1.1", "2"));
+		assertTrue("Wrong ancestry", tree.isAncestor(tree.findByEcNumber("3"), tree.findByEcNumber("3.2.1")));
+		assertTrue("Wrong ancestry", !tree.isAncestor(tree.findByEcNumber("3.2.1"), tree.findByEcNumber("3")));
+		assertTrue("Wrong ancestry", !tree.isAncestor(tree.findByEcNumber("2"), tree.findByEcNumber("3.2.1")));
+		// compare every pair against walking parent links
+		int n = tree.size();
+		int[] a = new int[n * n];
+		int[] b = new int[n * n];
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				a[i * n + j] = i;
+				b[i * n + j] = j;
+			}
+		}
+		int[] result = new int[n * n];
+		tree.lowestCommonAncestors(a, b, result);
+		for (int k = 0; k < result.length; k++) {
+			Set<ECNode> ancestors = new HashSet<ECNode>();
+			for (ECNode x = tree.getNode(a[k]); x != null; x = x.getParent())
+				ancestors.add(x);
+			ECNode expected = tree.getNode(b[k]);
+			while (!ancestors.contains(expected))
+				expected = expected.getParent();
+			assertEquals("Wrong LCA", expected, tree.getNode(result[k]));
+		}
+	}
+
+	private String lca(String a, String b) {
+		return String.valueOf(tree.lowestCommonAncestor(tree.findByEcNumber(a), tree.findByEcNumber(b)).getEcNumber());
+	}
+
 	@Test
 	public void testInOrder() throws IOException {
 		tree.print();
@@ -101,21 +426,67 @@ public class IntegrationTest {
 
 	@Test
 	public void testInOrderIdentical() throws IOException {
-		StringBuilder expected = new StringBuilder();
-		try (BufferedReader br = new BufferedReader(new FileReader("src/test/resources/expected_in_order.txt"))) {
+		assertEquals("Wrong in-order output", readExpectedInOrder(), toInOrderString(tree));
+	}
+
+	@Test
+	public void testInOrderIdenticalFromMappedFile() throws IOException {
+		ECTree mapped = ECTreeFactory.fromSibFileMapped(new File("src/main/resources/enzclass_2013-07-24.txt"));
+		assertEquals("Wrong in-order output", readExpectedInOrder(), toInOrderString(mapped));
+		assertEquals("Differs from the regex parser", toList(tree.breadthFirst()), toList(mapped.breadthFirst()));
+	}
+
+	@Test
+	public void testParseWithoutTree() throws IOException {
+		File file = new File("src/main/resources/enzclass_2013-07-24.txt");
+		List<String> parsed = new ArrayList<String>();
+		try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+			ECTreeFactory.parseSibFile(br, (number, description) -> parsed.add(number + ": " + description));
+		}
+		List<String> mapped = new ArrayList<String>();
+		ECTreeFactory.parseSibFileMapped(file, (number, description) -> mapped.add(number + ": " + description));
+		assertEquals("Wrong number of classes", tree.size() - 1, parsed.size());
+		assertEquals("Wrong first class", "1: Oxidoreductases.", parsed.get(0));
+		assertEquals("Parsers differ", parsed, mapped);
+	}
+
+	@Test
+	public void testParsersAgreeOnUnusualInput() throws IOException {
+		File file = File.createTempFile("enzclass", ".txt");
+		file.deleteOnExit();
+		Files.write(file.toPath(), "1. -. -.-  Oxidoreductases.\n1. 1. -.-  Acting on \u03b2-D-glucose.\n"
+				.getBytes(StandardCharsets.UTF_8));
+		assertEquals("Parsers differ", toInOrderString(ECTreeFactory.fromSibFile(file)),
+				toInOrderString(ECTreeFactory.fromSibFileMapped(file)));
+		assertEquals("Wrong description", "Acting on \u03b2-D-glucose.",
+				ECTreeFactory.fromSibFileMapped(file).findByEcNumber("1.1").getDescription());
+		Files.write(file.toPath(), "1. 4294967297. -.-  Overflowing.\n".getBytes(StandardCharsets.UTF_8));
+		try {
+			ECTreeFactory.fromSibFile(file);
+			fail("Accepted a code that overflows an int");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			ECTreeFactory.fromSibFileMapped(file);
+			fail("Accepted a code that overflows an int");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void testInOrderIdenticalFromShuffledFile() throws IOException {
+		List<String> lines = new ArrayList<String>();
+		try (BufferedReader br = new BufferedReader(new FileReader("src/main/resources/enzclass_2013-07-24.txt"))) {
 			String line = "";
 			while ((line = br.readLine()) != null)
-				expected.append(line);
-		}
-		StringBuilder actual = new StringBuilder();
-		for (ECNode node : tree) {
-			if (!node.isRoot()) {
-				for (int i = 1; i < node.getDepth(); i++)
-					actual.append("\t");
-				actual.append(node);
-			}
+				lines.add(line);
 		}
-		assertEquals("Wrong in-order output", expected.toString(), actual.toString());
+		Collections.shuffle(lines, new Random(0));
+		StringBuilder shuffled = new StringBuilder();
+		for (String line : lines)
+			shuffled.append(line).append("\n");
+		ECTree fromShuffled = ECTreeFactory.fromSibFile(new BufferedReader(new StringReader(shuffled.toString())));
+		assertEquals("Wrong in-order output", readExpectedInOrder(), toInOrderString(fromShuffled));
 	}
 
 	@Test
@@ -136,12 +507,398 @@ public class IntegrationTest {
 			assertEquals("Wrong depth", node.getDepth(), 3);
 	}
 
+	@Test
+	public void testPatternAndRange() {
+		for (ECTree t : Arrays.asList(tree, tree.freeze())) {
+			NavigableSet<ECNode> children = t.findByPattern("EC 2.7.*");
+			assertEquals("Wrong first", "2.7.1", children.first().getEcNumber().toString());
+			assertEquals("Wrong last", "2.7.99", children.last().getEcNumber().toString());
+			NavigableSet<ECNode> above10 = children.tailSet(t.findByEcNumber("2.7.10"), false);
+			assertEquals("Wrong tail", "[2.7.11, 2.7.12, 2.7.13, 2.7.99]", numbers(above10));
+			assertEquals("Wrong descending", "2.7.99", above10.descendingIterator().next().getEcNumber().toString());
+			assertEquals("Wrong exact", "[3.2]", numbers(t.findByPattern("3.2.-.-")));
+			assertEquals("Wrong middle wildcard", 12, t.findByPattern("3.*.1").size());
+			assertTrue("Should skip 3.4", !t.findByPattern("3.*.1").contains(t.findByEcNumber("3.4.11")));
+			assertEquals("Wrong top level", 6, t.findByPattern("*").size());
+			assertEquals("Wrong depth 3", 260, t.findByPattern("*.*.*.-").size());
+			assertEquals("Should be empty", 0, t.findByPattern("9.*").size());
+			NavigableSet<ECNode> range = t.findByRange(new ECNumber("1.1"), new ECNumber("1.3"));
+			assertEquals("Wrong range start", "1.1", range.first().getEcNumber().toString());
+			assertEquals("Wrong range end", "1.3", range.last().getEcNumber().toString());
+			assertTrue("Should contain", range.contains(t.findByEcNumber("1.2.7")));
+			assertTrue("Should not contain", !range.contains(t.findByEcNumber("1.3.1")));
+			ECNode missing = new ECNode(new ECNumber("1.1.99.5"), null);
+			assertEquals("Wrong ceiling", "1.2", range.ceiling(missing).getEcNumber().toString());
+			for (String pattern : new String[] { "3.*.1", "*.*.99", "1.*", "*.*.*", "2.7.*" }) {
+				NavigableSet<ECNode> matches = t.findByPattern(pattern);
+				List<ECNode> reversed = new ArrayList<ECNode>(matches);
+				Collections.reverse(reversed);
+				List<ECNode> descending = new ArrayList<ECNode>();
+				matches.descendingIterator().forEachRemaining(descending::add);
+				assertEquals("Wrong descending " + pattern, numbers(reversed), numbers(descending));
+				assertEquals("Wrong descending set " + pattern, numbers(reversed), numbers(matches.descendingSet()));
+			}
+			NavigableSet<ECNode> firsts = t.findByPattern("3.*.1");
+			ECNode between = t.findByEcNumber("3.4.11");
+			assertEquals("Wrong floor", "3.3.1", firsts.floor(between).getEcNumber().toString());
+			assertEquals("Wrong lower", "3.3.1", firsts.lower(between).getEcNumber().toString());
+			assertEquals("Wrong last", "3.13.1", firsts.last().getEcNumber().toString());
+			NavigableSet<ECNode> descending = firsts.descendingSet();
+			assertEquals("Wrong reversed first", "3.13.1", descending.first().getEcNumber().toString());
+			assertEquals("Wrong reversed ceiling", "3.3.1", descending.ceiling(between).getEcNumber().toString());
+			assertEquals("Wrong reversed head", "[3.13.1, 3.12.1, 3.11.1, 3.10.1, 3.9.1, 3.8.1, 3.7.1, 3.6.1, 3.5.1]",
+					numbers(descending.headSet(between)));
+			assertTrue("Should be the original", descending.descendingSet() == firsts);
+		}
+		try {
+			tree.findByPattern("3.-.1");
+			fail("Should reject a dash before a code");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRegistry() throws IOException {
+		ECTreeRegistry registry = new ECTreeRegistry();
+		FrozenECTree first = registry.load_2013_07_24();
+		ECTree next = ECTreeFactory.fromSibFile_2013_07_24();
+		next.add(new ECNode(new ECNumber("7"), "Translocases."));
+		LocalDate nextRelease = LocalDate.of(2018, 8, 1);
+		registry.put(nextRelease, next);
+		registry.put(LocalDate.of(2013, 1, 1), ECTreeFactory.fromSibFile_2013_07_24());
+		assertEquals("Wrong releases", 3, registry.getReleases().size());
+		assertEquals("Wrong latest", 335, registry.getLatest().size());
+		assertEquals("Wrong as-of", 334, registry.getAsOf(LocalDate.of(2015, 1, 1)).size());
+		assertEquals("Should be none", null, registry.getAsOf(LocalDate.of(2000, 1, 1)));
+		assertEquals("Wrong description", "Translocases.",
+				registry.get(nextRelease).findByEcNumber("7").getDescription());
+		assertEquals("Wrong in-order", toInOrderString(tree),
+				toInOrderString(registry.get(ECTreeRegistry.RELEASE_2013_07_24)));
+		assertEquals("Earlier result changed", toInOrderString(tree), toInOrderString(first));
+		assertSulfurNodes(registry.getLatest().findByDescriptionSubstring("sulfur"));
+		int descriptions = registry.getDescriptionCount();
+		FrozenECTree latest = registry.getLatest();
+		FrozenECTree reloaded = registry.load_2013_07_24();
+		registry.put(LocalDate.of(2014, 1, 1), ECTreeFactory.fromSibFile_2013_07_24());
+		assertEquals("Known descriptions were added again", descriptions, registry.getDescriptionCount());
+		assertTrue("Replaced a tree without new descriptions", registry.getLatest() == latest
+				&& registry.get(ECTreeRegistry.RELEASE_2013_07_24) == reloaded);
+		ECTree blanks = new ECTree();
+		blanks.add(new ECNode(new ECNumber("1"), null));
+		blanks.add(new ECNode(new ECNumber("2"), ""));
+		FrozenECTree stored = registry.put(LocalDate.of(2016, 1, 1), blanks);
+		assertEquals("Null became empty", null, stored.findByEcNumber("1").getDescription());
+		assertEquals("Empty became null", "", stored.findByEcNumber("2").getDescription());
+		assertEquals("Wrong count", descriptions + 1, registry.getDescriptionCount());
+		assertEquals("Wrong after growing", toInOrderString(tree),
+				toInOrderString(registry.get(ECTreeRegistry.RELEASE_2013_07_24)));
+	}
+
+	@Test
+	public void testResolver() {
+		ECResolver resolver = tree.resolver(16);
+		String[] values = { "3.2.-.-", "EC 2.8.1", "9.9.9", "not a number", "1.1.1.1", "3.2.1" };
+		List<String> column = new ArrayList<String>();
+		for (int i = 0; i < 10000; i++)
+			column.add(values[i % values.length]);
+		int[] ids = resolver.resolveIds(column);
+		assertEquals("Wrong id", tree.getNodeId(new ECNumber("3.2")), ids[0]);
+		assertEquals("Wrong id", tree.getNodeId(new ECNumber("2.8.1")), ids[1]);
+		assertEquals("Unknown should be -1", -1, ids[2]);
+		assertEquals("Malformed should be -1", -1, ids[3]);
+		assertEquals("Obsolete should be -1", -1, ids[4]);
+		assertTrue("Parallel differs", Arrays.equals(ids, resolver.resolveIdsParallel(column)));
+		assertTrue("Iterator differs", Arrays.equals(ids, resolver.resolveIds(column.iterator())));
+		ECNode[] nodes = resolver.getNodes(ids);
+		assertEquals("Wrong node", "3.2.1", nodes[5].getEcNumber().toString());
+		assertEquals("Unknown should be null", null, nodes[2]);
+		tree.add(new ECNode(new ECNumber("3.2.99"), "Test."));
+		assertEquals("Stale after modification", "3.2.99", resolver.resolve("3.2.99").getEcNumber().toString());
+	}
+
+	@Test
+	public void testLevelIndex() {
+		NavigableSet<ECNode> depth2 = tree.findNodesOfDepth(2);
+		assertTrue("Should be cached", depth2 == tree.findNodesOfDepth(2));
+		assertEquals("Wrong first", "1.1", depth2.first().getEcNumber().toString());
+		assertEquals("Wrong last", "6.6", depth2.last().getEcNumber().toString());
+		assertTrue("Should contain", depth2.contains(tree.findByEcNumber("3.2")));
+		assertTrue("Should not contain", !depth2.contains(tree.findByEcNumber("3.2.1")));
+		assertEquals("Wrong head", 2, depth2.headSet(tree.findByEcNumber("1.3")).size());
+		try {
+			depth2.add(tree.findByEcNumber("3"));
+			fail("Should be unmodifiable");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		assertEquals("Should be empty", 0, tree.findNodesOfDepth(5).size());
+		Iterator<ECNode> deep = tree.breadthFirst(2);
+		assertEquals("Wrong first", "1.1", deep.next().getEcNumber().toString());
+		assertEquals("Wrong number", 67 + 260 - 1, toList(deep).size());
+		tree.add(new ECNode(new ECNumber("3.2.99"), "Test."));
+		assertEquals("Not invalidated", 261, tree.findNodesOfDepth(3).size());
+		assertEquals("Wrong frozen", 261, tree.freeze().findNodesOfDepth(3).size());
+	}
+
+	@Test
+	public void testDescriptionFootprint() {
+		// 120 copies of the bundled release, each under its own top-level code
+		ECTree withDescriptions = copies(120, true);
+		Set<String> distinct = new HashSet<String>();
+		long bytes = 0;
+		for (ECNode node : tree) {
+			String description = node.getDescription();
+			if (description != null && distinct.add(description)) {
+				bytes += description.getBytes(StandardCharsets.UTF_8).length;
+			}
+		}
+		// each distinct description is stored once, not once per node
+		assertEquals("Wrong count", distinct.size(), withDescriptions.getDescriptionCount());
+		assertEquals("Wrong bytes", bytes, withDescriptions.getDescriptionByteCount());
+		assertEquals("Stored null descriptions", 0, copies(120, false).getDescriptionCount());
+		FrozenECTree frozen = withDescriptions.freeze();
+		assertEquals("Freezing stored descriptions", distinct.size(), withDescriptions.getDescriptionCount());
+		assertEquals("Wrong frozen count", distinct.size(), frozen.getDescriptionCount());
+		assertEquals("Wrong frozen bytes", bytes, frozen.getDescriptionByteCount());
+		assertEquals("Wrong description", tree.findByEcNumber("3.1.6").getDescription(),
+				frozen.findByEcNumber("103.1.6").getDescription());
+		ECTree blanks = new ECTree();
+		blanks.add(new ECNode(new ECNumber("1"), null));
+		blanks.add(new ECNode(new ECNumber("2"), ""));
+		assertEquals("Wrong count", 1, blanks.getDescriptionCount());
+		assertEquals("Null became empty", null, blanks.freeze().findByEcNumber("1").getDescription());
+		assertEquals("Empty became null", "", blanks.freeze().findByEcNumber("2").getDescription());
+	}
+
+	@Test
+	public void testDescriptionStorePerTree() {
+		ECTree distinct = new ECTree();
+		for (int a = 1; a <= 100; a++) {
+			distinct.add(new ECNode(ECNumber.valueOf(a), "Class " + a + "."));
+			for (int b = 1; b <= 400; b++)
+				distinct.add(new ECNode(ECNumber.valueOf(a, b), "Subclass " + b + " of class " + a + "."));
+		}
+		assertEquals("Wrong description", "Subclass 7 of class 3.", distinct.findByEcNumber("3.7").getDescription());
+		assertEquals("Wrong count", 100 + 100 * 400, distinct.getDescriptionCount());
+		// nothing is kept in a store shared between trees, so dropping a tree frees its descriptions
+		ECTree other = new ECTree();
+		other.add(new ECNode(ECNumber.valueOf(1), "Class 1."));
+		assertEquals("Shares a store", 1, other.getDescriptionCount());
+		assertEquals("Wrong bytes", "Class 1.".length(), other.getDescriptionByteCount());
+	}
+
+	@Test
+	public void testNodeSets() {
+		ECNodeSet depth3 = tree.findNodesOfDepth(3);
+		ECNodeSet sulfur = tree.findByDescriptionSubstring("sulfur");
+		ECNodeSet both = depth3.and(sulfur);
+		NavigableSet<ECNode> expected = new TreeSet<ECNode>(depth3);
+		expected.retainAll(sulfur);
+		assertEquals("Wrong and", expected, both);
+		assertEquals("Wrong order", numbers(expected), numbers(both));
+		assertEquals("Wrong within", both, tree.findByDescriptionSubstring("sulfur", depth3));
+		assertEquals("Wrong or", depth3.size() + sulfur.size() - both.size(), depth3.or(sulfur).cardinality());
+		assertEquals("Wrong andNot", sulfur.size() - both.size(), sulfur.andNot(depth3).size());
+		assertTrue("Should be empty", depth3.and(tree.findNodesOfDepth(2)).isEmpty());
+		assertEquals("Wrong last", expected.last(), both.last());
+		assertEquals("Wrong tail", expected.tailSet(tree.findByEcNumber("1.8")).size(),
+				both.tailSet(tree.findByEcNumber("1.8")).size());
+		assertEquals("Wrong exact within", 0,
+				tree.findByExactDescription("With oxygen as acceptor.", tree.findNodesOfDepth(2)).size());
+		assertEquals("Wrong frozen", numbers(both), numbers(tree.freeze().findNodesOfDepth(3).and(
+				tree.freeze().findByDescriptionSubstring("sulfur"))));
+		try {
+			depth3.and(tree.freeze().findNodesOfDepth(3));
+			fail("Combined sets from different trees");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			sulfur.removeIf(node -> node.getDepth() == 3);
+			fail("Modified a query result");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		NavigableSet<ECNode> copy = new TreeSet<ECNode>(sulfur);
+		copy.removeIf(node -> node.getDepth() == 3);
+		assertEquals("Wrong copy", sulfur.andNot(depth3), copy);
+		// subtree queries are masked to the subtree's ids and combine with the tree's sets
+		ECNode lyases = tree.findByEcNumber("4");
+		NavigableSet<ECNode> inLyases = new TreeSet<ECNode>();
+		for (ECNode node : sulfur) {
+			if (node.equals(lyases) || tree.isAncestor(lyases, node)) inLyases.add(node);
+		}
+		ECNodeSet subtree = lyases.findByDescriptionSubstring("sulfur");
+		assertTrue("Should not be empty", !subtree.isEmpty());
+		assertEquals("Wrong subtree", numbers(inLyases), numbers(subtree));
+		assertEquals("Wrong subtree and", numbers(both.and(subtree)), numbers(subtree.and(depth3)));
+		assertEquals("Wrong frozen subtree", numbers(subtree),
+				numbers(tree.freeze().findByEcNumber("4").findByDescriptionSubstring("sulfur")));
+		assertEquals("Wrong exact subtree", "[1.1.1]",
+				numbers(tree.findByEcNumber("1.1").findByExactDescription("With NAD(+) or NADP(+) as acceptor.")));
+		assertTrue("Matched the root", lyases.findByExactDescription(null).isEmpty());
+		tree.indexDescriptions();
+		assertEquals("Wrong indexed subtree", numbers(inLyases),
+				numbers(tree.findByEcNumber("4").findByDescriptionSubstring("sulfur")));
+		try {
+			new ECNode(new ECNumber("4"), "Lyases.").findByDescriptionSubstring("sulfur");
+			fail("Searched a node outside a tree");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testSnapshot() throws IOException {
+		File source = new File("src/main/resources/enzclass_2013-07-24.txt");
+		File snapshot = File.createTempFile("ectree", ".snapshot");
+		snapshot.deleteOnExit();
+		ECTreeFactory.writeSnapshot(tree, snapshot, ECTreeFactory.checksum(source));
+		FrozenECTree loaded = ECTreeFactory.fromSnapshot(snapshot, source);
+		assertEquals("Wrong in-order output", readExpectedInOrder(), toInOrderString(loaded));
+		assertSulfurNodes(loaded.findByDescriptionSubstring("sulfur"));
+		ECTreeFactory.writeSnapshot(tree, snapshot, 0);
+		try {
+			ECTreeFactory.fromSnapshot(snapshot, source);
+			fail("Accepted a stale snapshot");
+		} catch (IOException expected) {
+		}
+		FrozenECTree cached = ECTreeFactory.fromSibFileCached(source, snapshot);
+		assertEquals("Wrong in-order output", readExpectedInOrder(), toInOrderString(cached));
+		ECTreeFactory.fromSnapshot(snapshot, source); // throws if the stale snapshot was not rewritten
+		assertEquals("Replacing changed a loaded tree", readExpectedInOrder(), toInOrderString(loaded));
+		ECTreeFactory.writeSnapshot(tree, snapshot, source);
+		assertEquals("Wrong in-order output", readExpectedInOrder(),
+				toInOrderString(ECTreeFactory.fromSnapshot(snapshot, source)));
+		byte[] valid = Files.readAllBytes(snapshot.toPath());
+		int n = tree.size();
+		// the high byte of the node count, then the low bytes of a number, a
+		// parent, a subtree end, and a depth
+		int[] offsets = { 32, 36 + 8 * 7 + 7, 36 + 8 * n + 4 * 7 + 3, 36 + 12 * n + 4 * 7 + 3, 36 + 16 * n + 7 };
+		for (int offset : offsets) {
+			byte[] corrupt = valid.clone();
+			corrupt[offset] ^= offset == 32 ? 0x7f : 1;
+			Files.write(snapshot.toPath(), corrupt);
+			try {
+				ECTreeFactory.fromSnapshot(snapshot);
+				fail("Accepted a snapshot corrupted at byte " + offset);
+			} catch (IOException expected) {
+			}
+		}
+	}
+
+	@Test
+	public void testRankedSearch() {
+		List<ECNode> ranked = tree.searchDescriptions("oxygen acceptor", 5);
+		assertEquals("Wrong number", 5, ranked.size());
+		for (ECNode node : ranked)
+			assertEquals("Wrong match", "With oxygen as acceptor.", node.getDescription());
+		List<ECNode> inSubtree = tree.searchDescriptions("oxygen acceptor", 100, tree.findByEcNumber("1.4"));
+		assertEquals("Wrong best", "1.4.3", inSubtree.get(0).getEcNumber().toString());
+		for (ECNode node : inSubtree)
+			assertTrue("Outside subtree", node.getEcNumber().toString().startsWith("1.4."));
+		assertEquals("Frozen differs", ranked.toString(), tree.freeze().searchDescriptions("Oxygen, acceptor!", 5)
+				.toString());
+		assertEquals("Should find nothing", 0, tree.searchDescriptions("zzzz", 5).size());
+	}
+
+	@Test
+	public void testIndexAgreesWithScan() {
+		ECTree small = new ECTree();
+		small.add(new ECNode(new ECNumber("1"), "\u0130ron oxidoreductases."));
+		small.add(new ECNode(new ECNumber("2"), null));
+		small.add(new ECNode(new ECNumber("3"), "Kelvin \u212A transferases."));
+		small.add(new ECNode(new ECNumber("4"), "Stra\u00dfe lyases."));
+		String[] queries = { "iron", "\u0130RON", "k tr", "STRA\u00dfE", "lyases.", "ases" };
+		List<String> scanned = new ArrayList<String>();
+		for (String query : queries)
+			scanned.add(numbers(small.findByDescriptionSubstring(query)) + numbers(small.findByExactDescription(query)));
+		List<ECNode> similar = small.findBySimilarDescription("iron oxidoreductase", 2, 5);
+		small.indexDescriptions();
+		for (int i = 0; i < queries.length; i++) {
+			assertEquals("Index changed " + queries[i], scanned.get(i),
+					numbers(small.findByDescriptionSubstring(queries[i]))
+							+ numbers(small.findByExactDescription(queries[i])));
+		}
+		assertEquals("Index changed similar", similar, small.findBySimilarDescription("iron oxidoreductase", 2, 5));
+		assertEquals("Wrong folded match", "[1]", numbers(small.findByDescriptionSubstring("iron")));
+	}
+
+	@Test
+	public void testSimilarSearch() {
+		List<ECNode> scanned = tree.findBySimilarDescription("sulphuric ester hydrolase", 3, 5);
+		assertEquals("Wrong nearest", "3.1.6", scanned.get(0).getEcNumber().toString());
+		List<ECNode> acceptors = tree.findBySimilarDescription("With NAD(+) or NADP(+) as aceptor", 1, 100);
+		assertEquals("Wrong nearest", "1.1.1", acceptors.get(0).getEcNumber().toString());
+		assertEquals("Should match only the exact description",
+				tree.findByExactDescription("With NAD(+) or NADP(+) as acceptor.").size(), acceptors.size());
+		assertEquals("Wrong limit", 2, tree.findBySimilarDescription("With NAD(+) or NADP(+) as aceptor", 1, 2).size());
+		tree.indexDescriptions();
+		assertEquals("Index differs", scanned, tree.findBySimilarDescription("sulphuric ester hydrolase", 3, 5));
+		assertEquals("Index differs", acceptors,
+				tree.findBySimilarDescription("With NAD(+) or NADP(+) as aceptor", 1, 100));
+		FrozenECTree frozen = tree.freeze();
+		frozen.indexDescriptions();
+		assertEquals("Wrong frozen", "3.1.6",
+				frozen.findBySimilarDescription("sulphuric ester hydrolase", 3, 5).get(0).getEcNumber().toString());
+		assertEquals("Should find nothing", 0, tree.findBySimilarDescription("zzzzzzzzzzzz", 2, 5).size());
+	}
+
+	@Test
+	public void testStreams() {
+		List<String> inOrder = toList(tree.inOrder());
+		List<String> streamed = new ArrayList<String>();
+		tree.stream().forEach(node -> streamed.add(String.valueOf(node)));
+		assertEquals("Wrong sequential stream", inOrder, streamed);
+		assertEquals("Wrong parallel count", tree.size(), tree.parallelStream().count());
+		assertEquals("Wrong parallel order", inOrder, tree.freeze().parallelStream().map(String::valueOf)
+				.collect(Collectors.toList()));
+		ECNode node = tree.findByEcNumber("3");
+		assertEquals("Wrong subtree stream", toList(node.inOrder()), node.parallelStream().map(String::valueOf)
+				.collect(Collectors.toList()));
+		assertEquals("Wrong subtree size", 70, node.spliterator().getExactSizeIfKnown());
+		List<String> split = new ArrayList<String>();
+		collectSplits(tree.spliterator(), split);
+		assertEquals("Splits lost or reordered nodes", inOrder, split);
+	}
+
+	private static void collectSplits(Spliterator<ECNode> spliterator, List<String> out) {
+		long size = spliterator.estimateSize();
+		Spliterator<ECNode> prefix = spliterator.trySplit();
+		if (prefix == null) {
+			spliterator.forEachRemaining(node -> out.add(String.valueOf(node)));
+			return;
+		}
+		assertEquals("Sizes do not add up", size, prefix.estimateSize() + spliterator.estimateSize());
+		collectSplits(prefix, out);
+		collectSplits(spliterator, out);
+	}
+
 	@Test
 	public void testSubstringSearch() throws IOException {
-		NavigableSet<ECNode> nodes = tree.findByDescriptionSubstring("sulfur");
+		assertSulfurNodes(tree.findByDescriptionSubstring("sulfur"));
+		assertSulfurNodes(tree.findByDescriptionSubstring("SULFUR"));
+	}
+
+	@Test
+	public void testIndexedSearch() throws IOException {
+		NavigableSet<ECNode> unindexed = tree.findByDescriptionSubstring("ox");
+		tree.indexDescriptions();
+		assertSulfurNodes(tree.findByDescriptionSubstring("Sulfur"));
+		assertEquals("Wrong short query", unindexed, tree.findByDescriptionSubstring("ox"));
+		assertEquals("Found absent trigram", 0, tree.findByDescriptionSubstring("zzz").size());
+		NavigableSet<ECNode> nodes = tree.findByExactDescription("forming CARBON-sulfur bonds.");
+		assertEquals("Wrong size", 1, nodes.size());
+		assertEquals("Wrong node", "6.2", nodes.first().getEcNumber().toString());
+		tree.add(new ECNode(new ECNumber("6.6.2"), "Forming sulfur-metal bonds."));
+		assertEquals("Index not rebuilt", 24, tree.findByDescriptionSubstring("sulfur").size());
+	}
+
+	private static void assertSulfurNodes(NavigableSet<ECNode> nodes) {
 		String[] ecArray = new String[] { "1.2.7", "1.3.7", "1.4.7", "1.5.7", "1.7.7", "1.8.7", "1.8", "1.12.7",
-				"1.14.15", "1.17.7", "1.18", "2.8", "3.10.1", "3.10", "3.12.1", "3.12", "3.13.1", "3.13", "4.4.1",
-				"4.4", "6.2" };
+				"1.14.15", "1.17.7", "1.18", "2.8", "2.8.1", "3.1.6", "3.10.1", "3.10", "3.12.1", "3.12", "3.13.1",
+				"3.13", "4.4.1", "4.4", "6.2" };
 		assertEquals("Wrong size", ecArray.length, nodes.size());
 		Set<String> ecs = new HashSet<String>();
 		for (String ec : ecArray)
@@ -150,4 +907,63 @@ public class IntegrationTest {
 			assertTrue("Extra node " + node.getEcNumber(), ecs.contains(node.getEcNumber().toString()));
 		}
 	}
+
+	private static String readExpectedInOrder() throws IOException {
+		StringBuilder expected = new StringBuilder();
+		try (BufferedReader br = new BufferedReader(new FileReader("src/test/resources/expected_in_order.txt"))) {
+			String line = "";
+			while ((line = br.readLine()) != null)
+				expected.append(line);
+		}
+		return expected.toString();
+	}
+
+	private static String toInOrderString(ECTree tree) {
+		StringBuilder actual = new StringBuilder();
+		for (ECNode node : tree) {
+			if (!node.isRoot()) {
+				for (int i = 1; i < node.getDepth(); i++)
+					actual.append("\t");
+				actual.append(node);
+			}
+		}
+		return actual.toString();
+	}
+
+	private static String numbers(Collection<ECNode> nodes) {
+		return nodes.stream().map(node -> node.getEcNumber().toString()).collect(Collectors.toList()).toString();
+	}
+
+	/**
+	 * Returns {@code copies} copies of the bundled release, copy {@code k}
+	 * under top-level code {@code 100 + k}, with descriptions or without.
+	 */
+	private static ECTree copies(int copies, boolean withDescriptions) {
+		ECTree release;
+		try {
+			release = ECTreeFactory.fromSibFile_2013_07_24();
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+		ECTree copied = new ECTree();
+		for (int k = 1; k <= copies; k++) {
+			for (ECNode node : release) {
+				if (node.isRoot()) continue;
+				ECNumber number = node.getEcNumber();
+				int[] codes = new int[number.getDepth()];
+				for (int d = 1; d <= codes.length; d++)
+					codes[d - 1] = number.getCodeAtDepth(d);
+				codes[0] += 100 * k;
+				copied.add(new ECNode(ECNumber.valueOf(codes), withDescriptions ? node.getDescription() : null));
+			}
+		}
+		return copied;
+	}
+
+	private static List<String> toList(Iterator<ECNode> iter) {
+		List<String> list = new ArrayList<String>();
+		while (iter.hasNext())
+			list.add(String.valueOf(iter.next()));
+		return list;
+	}
 }